@@ -0,0 +1,140 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the samples using {@link BinaryValuesFormat} into the {@link ByteBuffer} provided by the
+ * implementation, nothing is allocated per sample. The samples must carry the ids of the run
+ * {@link ValuesDictionary}, each entry is written once before the first sample using it.
+ */
+public abstract class AbstractBinaryValuesRecordWriter
+    implements ValuesRecordWriter
+{
+
+    private final ValuesDictionary dictionary;
+
+    private int writtenMethods, writtenPaths;
+
+    private long writtenBytes;
+
+    protected AbstractBinaryValuesRecordWriter( ValuesDictionary dictionary )
+    {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @return the buffer the next record will be written to
+     */
+    protected abstract ByteBuffer buffer();
+
+    /**
+     * Makes sure {@link #buffer()} can take <code>size</code> more bytes, it may call {@link #resetDictionary()}
+     * when starting a new file.
+     */
+    protected abstract void ensureRemaining( int size )
+        throws IOException;
+
+    /**
+     * Next records will be preceded by the whole dictionary, used when starting a new file.
+     */
+    protected void resetDictionary()
+    {
+        writtenMethods = 0;
+        writtenPaths = 0;
+    }
+
+    @Override
+    public void write( Values values )
+        throws IOException
+    {
+        int methodId = values.getMethodId();
+        int pathId = values.getPathId();
+        int required = requiredSize( methodId, pathId );
+        ensureRemaining( required );
+        // a new segment started with the whole dictionary to write again
+        int afterSwitch = requiredSize( methodId, pathId );
+        if ( afterSwitch != required )
+        {
+            required = afterSwitch;
+            ensureRemaining( required );
+        }
+        writePendingDictionary( methodId, pathId );
+        BinaryValuesFormat.writeSample( buffer(), values );
+        writtenBytes += required;
+    }
+
+    @Override
+    public long getWrittenBytes()
+    {
+        return writtenBytes;
+    }
+
+    /**
+     * @return size of the sample record and of the dictionary entries not written yet it needs
+     */
+    private int requiredSize( int methodId, int pathId )
+    {
+        int required = BinaryValuesFormat.RECORD_SIZE;
+        if ( writtenMethods <= methodId || writtenPaths <= pathId )
+        {
+            required += pendingDictionarySize( methodId, pathId );
+        }
+        return required;
+    }
+
+    private int pendingDictionarySize( int methodId, int pathId )
+    {
+        int size = 0;
+        for ( int i = writtenMethods; i <= methodId; i++ )
+        {
+            size += BinaryValuesFormat.dictionaryEntrySize(
+                BinaryValuesFormat.encodeDictionaryValue( dictionary.getMethod( i ) ) );
+        }
+        for ( int i = writtenPaths; i <= pathId; i++ )
+        {
+            size += BinaryValuesFormat.dictionaryEntrySize(
+                BinaryValuesFormat.encodeDictionaryValue( dictionary.getPath( i ) ) );
+        }
+        return size;
+    }
+
+    /**
+     * writes the entries not written yet up to the ids used by the sample, other producers may have added
+     * entries in the meantime which will be written when used.
+     */
+    private void writePendingDictionary( int methodId, int pathId )
+    {
+        for ( ; writtenMethods <= methodId; writtenMethods++ )
+        {
+            BinaryValuesFormat.writeDictionaryEntry( buffer(), BinaryValuesFormat.METHOD_KIND, writtenMethods, //
+                                                     BinaryValuesFormat.encodeDictionaryValue(
+                                                         dictionary.getMethod( writtenMethods ) ) );
+        }
+        for ( ; writtenPaths <= pathId; writtenPaths++ )
+        {
+            BinaryValuesFormat.writeDictionaryEntry( buffer(), BinaryValuesFormat.PATH_KIND, writtenPaths, //
+                                                     BinaryValuesFormat.encodeDictionaryValue(
+                                                         dictionary.getPath( writtenPaths ) ) );
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of the binary sample format.
+ * <p>
+ * A file starts with a {@link #HEADER_SIZE} bytes header (magic, version, record size) followed by records.
+ * Sample records have the fixed size {@link #RECORD_SIZE}:
+ * <pre>
+ *  0 byte  type ({@link #SAMPLE})
+ *  1 byte  flags ({@link #WARMUP_FLAG})
+ *  2 short status
+ *  4 int   path id
+ *  8 short method id
+ * 10 short iteration
+ * 12 int   size
+ * 16 long  event timestamp
+ * 24 long  response time
+ * 32 long  latency time
+ * </pre>
+ * The first time a method or a path id is used, a variable length {@link #DICTIONARY} record
+ * (type, kind, utf-8 length as short, id as int, utf-8 bytes) is written before the sample referencing it,
+ * so the file is readable up to its last complete record.
+ * A type of {@link #END} (i.e. zero) marks the end of the data.
+ */
+public final class BinaryValuesFormat
+{
+
+    public static final int MAGIC = 0x4C475631; // LGV1
+
+    public static final short VERSION = 1;
+
+    public static final int HEADER_SIZE = 8;
+
+    public static final int RECORD_SIZE = 40;
+
+    public static final byte END = 0;
+
+    public static final byte SAMPLE = 1;
+
+    public static final byte DICTIONARY = 2;
+
+    /**
+     * flag of the samples recorded during the warmup phase
+     */
+    public static final byte WARMUP_FLAG = 0x1;
+
+    public static final byte METHOD_KIND = 1;
+
+    public static final byte PATH_KIND = 2;
+
+    public static final int DICTIONARY_ENTRY_HEADER_SIZE = 8;
+
+    /**
+     * utf-8 length of the dictionary entry of a <code>null</code> method or path, followed by no bytes
+     */
+    public static final int NULL_LENGTH = 0xFFFF;
+
+    /**
+     * maximum utf-8 length of a method or path, longer ones are truncated by {@link #truncateDictionaryValue(String)}
+     */
+    public static final int MAX_VALUE_LENGTH = NULL_LENGTH - 1;
+
+    private BinaryValuesFormat()
+    {
+        // no op
+    }
+
+    public static void writeHeader( ByteBuffer buffer )
+    {
+        buffer.putInt( MAGIC ).putShort( VERSION ).putShort( (short) RECORD_SIZE );
+    }
+
+    /**
+     * @throws IllegalArgumentException if the buffer doesn't start with a supported header
+     */
+    public static void readHeader( ByteBuffer buffer )
+    {
+        if ( buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC )
+        {
+            throw new IllegalArgumentException( "not a binary values file" );
+        }
+        short version = buffer.getShort();
+        short recordSize = buffer.getShort();
+        if ( version != VERSION || recordSize != RECORD_SIZE )
+        {
+            throw new IllegalArgumentException( "unsupported binary values version " + version );
+        }
+    }
+
+    public static void writeSample( ByteBuffer buffer, Values values )
+    {
+        buffer.put( SAMPLE ) //
+            .put( values.isWarmup() ? WARMUP_FLAG : 0 ) //
+            .putShort( (short) values.getStatus() ) //
+            .putInt( values.getPathId() ) //
+            .putShort( (short) values.getMethodId() ) //
+            .putShort( (short) values.getIteration() ) //
+            .putInt( (int) Math.min( values.getSize(), Integer.MAX_VALUE ) ) //
+            .putLong( values.getEventTimestamp() ) //
+            .putLong( values.getResponseTime() ) //
+            .putLong( values.getLatencyTime() );
+    }
+
+    /**
+     * @return the value cut on a character boundary to at most {@link #MAX_VALUE_LENGTH} utf-8 bytes, two values
+     * sharing that prefix cannot be told apart once truncated
+     */
+    public static String truncateDictionaryValue( String value )
+    {
+        // a char is at most 3 utf-8 bytes, surrogate pairs 4 bytes for 2 chars
+        if ( value == null || value.length() * 3 <= MAX_VALUE_LENGTH )
+        {
+            return value;
+        }
+        byte[] encoded = value.getBytes( StandardCharsets.UTF_8 );
+        if ( encoded.length <= MAX_VALUE_LENGTH )
+        {
+            return value;
+        }
+        int length = MAX_VALUE_LENGTH;
+        // do not cut a multi bytes character
+        while ( length > 0 && ( encoded[length] & 0xC0 ) == 0x80 )
+        {
+            length--;
+        }
+        return new String( encoded, 0, length, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * @return <code>null</code> for a <code>null</code> value
+     * @throws IllegalArgumentException if the value has not been truncated by
+     * {@link #truncateDictionaryValue(String)}
+     */
+    public static byte[] encodeDictionaryValue( String value )
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+        byte[] encoded = value.getBytes( StandardCharsets.UTF_8 );
+        if ( encoded.length > MAX_VALUE_LENGTH )
+        {
+            throw new IllegalArgumentException( "dictionary value of " + encoded.length + " bytes longer than "
+                                                    + MAX_VALUE_LENGTH );
+        }
+        return encoded;
+    }
+
+    /**
+     * @return size in bytes of the dictionary entry of the encoded value
+     */
+    public static int dictionaryEntrySize( byte[] value )
+    {
+        return DICTIONARY_ENTRY_HEADER_SIZE + ( value == null ? 0 : value.length );
+    }
+
+    /**
+     * @param value encoded by {@link #encodeDictionaryValue(String)}
+     */
+    public static void writeDictionaryEntry( ByteBuffer buffer, byte kind, int id, byte[] value )
+    {
+        buffer.put( DICTIONARY ) //
+            .put( kind ) //
+            .putShort( (short) ( value == null ? NULL_LENGTH : value.length ) ) //
+            .putInt( id );
+        if ( value != null )
+        {
+            buffer.put( value );
+        }
+    }
+
+    /**
+     * Reads the sample at the buffer position, the type byte must have already been consumed.
+     * Method and path are resolved using the dictionary.
+     */
+    public static Values readSample( ByteBuffer buffer, Values values, ValuesDictionary dictionary )
+    {
+        byte flags = buffer.get();
+        int status = buffer.getShort();
+        int pathId = buffer.getInt();
+        int methodId = buffer.getShort();
+        int iteration = buffer.getShort();
+        return values.status( status ) //
+            .warmup( ( flags & WARMUP_FLAG ) != 0 ) //
+            .iteration( iteration ) //
+            .pathId( pathId ) //
+            .path( dictionary.getPath( pathId ) ) //
+            .methodId( methodId ) //
+            .method( dictionary.getMethod( methodId ) ) //
+            .size( buffer.getInt() ) //
+            .eventTimestamp( buffer.getLong() ) //
+            .responseTime( buffer.getLong() ) //
+            .latencyTime( buffer.getLong() );
+    }
+
+    /**
+     * Reads the dictionary entry at the buffer position into the dictionary,
+     * the type byte must have already been consumed.
+     */
+    public static void readDictionaryEntry( ByteBuffer buffer, ValuesDictionary dictionary )
+    {
+        byte kind = buffer.get();
+        int length = buffer.getShort() & 0xFFFF;
+        int id = buffer.getInt();
+        String str = null;
+        if ( length != NULL_LENGTH )
+        {
+            byte[] value = new byte[length];
+            buffer.get( value );
+            str = new String( value, StandardCharsets.UTF_8 );
+        }
+        int interned = kind == METHOD_KIND ? dictionary.methodId( str ) : dictionary.pathId( str );
+        if ( interned != id )
+        {
+            throw new IllegalStateException( "dictionary entry " + str + " out of order: " + id + "/" + interned );
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Reads the samples of a file written with {@link BinaryValuesFormat}, compressed or not, one record at a time.
+ * Dictionary records are loaded into the dictionary as they are met.
+ */
+public class BinaryValuesRecordReader
+    implements ValuesRecordReader
+{
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+
+    private final ValuesDictionary dictionary;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+
+    private boolean eof;
+
+    /**
+     * bytes read from the channel, starting from the offset of the stream
+     */
+    private long bytesRead;
+
+    public BinaryValuesRecordReader( Path path, ValuesDictionary dictionary )
+        throws IOException
+    {
+        this( ValuesCompression.newInputStream( path ), dictionary, 0 );
+    }
+
+    /**
+     * @param inputStream the uncompressed content of a binary file starting at <code>offset</code>
+     * @param offset <code>0</code> to read the header, otherwise the offset of a record. The dictionary must
+     * already contain the entries written before the offset.
+     */
+    public BinaryValuesRecordReader( InputStream inputStream, ValuesDictionary dictionary, long offset )
+        throws IOException
+    {
+        this.channel = Channels.newChannel( inputStream );
+        this.dictionary = dictionary;
+        this.bytesRead = offset;
+        this.buffer.flip();
+        if ( offset == 0 )
+        {
+            if ( !ensure( BinaryValuesFormat.HEADER_SIZE ) )
+            {
+                close();
+                throw new IllegalArgumentException( "not a binary values file" );
+            }
+            BinaryValuesFormat.readHeader( buffer );
+        }
+    }
+
+    @Override
+    public boolean read( Values values )
+        throws IOException
+    {
+        while ( ensure( 1 ) )
+        {
+            byte type = buffer.get( buffer.position() );
+            if ( type == BinaryValuesFormat.SAMPLE )
+            {
+                if ( !ensure( BinaryValuesFormat.RECORD_SIZE ) )
+                {
+                    return false;
+                }
+                buffer.get();
+                BinaryValuesFormat.readSample( buffer, values, dictionary );
+                return true;
+            }
+            if ( type != BinaryValuesFormat.DICTIONARY || !ensure( BinaryValuesFormat.DICTIONARY_ENTRY_HEADER_SIZE ) )
+            {
+                return false;
+            }
+            int length = buffer.getShort( buffer.position() + 2 ) & 0xFFFF;
+            if ( !ensure( BinaryValuesFormat.DICTIONARY_ENTRY_HEADER_SIZE //
+                              + ( length == BinaryValuesFormat.NULL_LENGTH ? 0 : length ) ) )
+            {
+                return false;
+            }
+            buffer.get();
+            BinaryValuesFormat.readDictionaryEntry( buffer, dictionary );
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if at least <code>size</code> bytes are available in the buffer
+     */
+    private boolean ensure( int size )
+        throws IOException
+    {
+        if ( buffer.remaining() >= size )
+        {
+            return true;
+        }
+        buffer.compact();
+        while ( !eof && buffer.position() < size )
+        {
+            int n = channel.read( buffer );
+            eof = n < 0;
+            bytesRead += Math.max( 0, n );
+        }
+        buffer.flip();
+        return buffer.remaining() >= size;
+    }
+
+    @Override
+    public long getPosition()
+    {
+        return bytesRead - buffer.remaining();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        channel.close();
+    }
+}
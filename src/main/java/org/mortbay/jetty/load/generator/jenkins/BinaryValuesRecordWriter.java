@@ -0,0 +1,94 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the samples using {@link BinaryValuesFormat} to a stream.
+ */
+public class BinaryValuesRecordWriter
+    extends AbstractBinaryValuesRecordWriter
+{
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream outputStream;
+
+    private ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+
+    public BinaryValuesRecordWriter( OutputStream outputStream, ValuesDictionary dictionary )
+    {
+        super( dictionary );
+        this.outputStream = outputStream;
+        BinaryValuesFormat.writeHeader( buffer );
+    }
+
+    @Override
+    protected ByteBuffer buffer()
+    {
+        return buffer;
+    }
+
+    @Override
+    protected void ensureRemaining( int size )
+        throws IOException
+    {
+        if ( buffer.remaining() < size )
+        {
+            flushBuffer();
+            if ( buffer.capacity() < size )
+            {
+                // long dictionary entries
+                buffer = ByteBuffer.allocate( size );
+            }
+        }
+    }
+
+    private void flushBuffer()
+        throws IOException
+    {
+        outputStream.write( buffer.array(), 0, buffer.position() );
+        buffer.clear();
+    }
+
+    @Override
+    public void flush()
+        throws IOException
+    {
+        flushBuffer();
+        outputStream.flush();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            outputStream.close();
+        }
+    }
+}
@@ -0,0 +1,397 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Column store of the samples of a run for post run analysis: one file of primitives per field in a directory,
+ * memory mapped when opened. Aggregations scan the columns without creating an object per sample.
+ * <p>
+ * Each column is mapped at once so a store is limited to {@link #MAX_ROWS} samples.
+ * The samples of the warmup phase are stored but left out of the aggregations unless
+ * {@link #includeWarmup(boolean)} is set.
+ */
+public class ColumnarValues
+{
+
+    /**
+     * the long columns must fit in a single mapping
+     */
+    public static final int MAX_ROWS = Integer.MAX_VALUE / Long.BYTES;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String META_FILE = "columns.json";
+
+    private static final String TIMESTAMP_COLUMN = "timestamp", PATH_ID_COLUMN = "pathId", STATUS_COLUMN = "status",
+        SIZE_COLUMN = "size", RESPONSE_TIME_COLUMN = "responseTime", LATENCY_TIME_COLUMN = "latencyTime",
+        WARMUP_COLUMN = "warmup";
+
+    private final Meta meta;
+
+    private final ValuesDictionary dictionary;
+
+    private final LongBuffer timestamps, responseTimes, latencyTimes;
+
+    private final IntBuffer pathIds, sizes;
+
+    private final ShortBuffer statuses;
+
+    /**
+     * <code>null</code> for a store written before the warmup phase was recorded
+     */
+    private final ByteBuffer warmups;
+
+    private boolean includeWarmup;
+
+    private ColumnarValues( Path directory, Meta meta )
+        throws IOException
+    {
+        this.meta = meta;
+        this.dictionary = new ValuesDictionary();
+        meta.paths.forEach( dictionary::pathId );
+        this.timestamps = map( directory, TIMESTAMP_COLUMN ).asLongBuffer();
+        this.pathIds = map( directory, PATH_ID_COLUMN ).asIntBuffer();
+        this.statuses = map( directory, STATUS_COLUMN ).asShortBuffer();
+        this.sizes = map( directory, SIZE_COLUMN ).asIntBuffer();
+        this.responseTimes = map( directory, RESPONSE_TIME_COLUMN ).asLongBuffer();
+        this.latencyTimes = map( directory, LATENCY_TIME_COLUMN ).asLongBuffer();
+        this.warmups = Files.exists( directory.resolve( WARMUP_COLUMN ) ) ? map( directory, WARMUP_COLUMN ) : null;
+    }
+
+    private static ByteBuffer map( Path directory, String column )
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open( directory.resolve( column ), StandardOpenOption.READ ))
+        {
+            return channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+    }
+
+    /**
+     * @param directory written by {@link #write(List, Path)}
+     */
+    public static ColumnarValues open( Path directory )
+        throws IOException
+    {
+        return new ColumnarValues( directory, OBJECT_MAPPER.readValue( directory.resolve( META_FILE ).toFile(),
+                                                                       Meta.class ) );
+    }
+
+    /**
+     * Converts samples files (text or binary, compressed or not) of the same run into columns.
+     *
+     * @param files the files in order, see {@link ValuesFormat#samplesFiles(Path)}
+     * @return the number of samples
+     * @throws IllegalStateException if there are more than {@link #MAX_ROWS} samples
+     */
+    public static long write( List<Path> files, Path directory )
+        throws IOException
+    {
+        Files.createDirectories( directory );
+        ValuesDictionary dictionary = new ValuesDictionary();
+        Values values = new Values();
+        long rows = 0;
+        try (DataOutputStream timestamps = column( directory, TIMESTAMP_COLUMN );
+             DataOutputStream pathIds = column( directory, PATH_ID_COLUMN );
+             DataOutputStream statuses = column( directory, STATUS_COLUMN );
+             DataOutputStream sizes = column( directory, SIZE_COLUMN );
+             DataOutputStream responseTimes = column( directory, RESPONSE_TIME_COLUMN );
+             DataOutputStream latencyTimes = column( directory, LATENCY_TIME_COLUMN );
+             DataOutputStream warmups = column( directory, WARMUP_COLUMN ))
+        {
+            for ( Path file : files )
+            {
+                try (ValuesRecordReader reader = //
+                         ValuesFileReader.newRecordReader( ValuesFileReader.detectFormat( file ), file, dictionary ))
+                {
+                    while ( reader.read( values ) )
+                    {
+                        if ( ++rows > MAX_ROWS )
+                        {
+                            throw new IllegalStateException( "too many samples for a column store: " + rows );
+                        }
+                        timestamps.writeLong( values.getEventTimestamp() );
+                        pathIds.writeInt( values.getPathId() );
+                        statuses.writeShort( values.getStatus() );
+                        sizes.writeInt( (int) Math.min( values.getSize(), Integer.MAX_VALUE ) );
+                        responseTimes.writeLong( values.getResponseTime() );
+                        latencyTimes.writeLong( values.getLatencyTime() );
+                        warmups.writeBoolean( values.isWarmup() );
+                    }
+                }
+            }
+        }
+        Meta meta = new Meta();
+        meta.rows = rows;
+        for ( int i = 0; i < dictionary.getPathCount(); i++ )
+        {
+            meta.paths.add( dictionary.getPath( i ) );
+        }
+        OBJECT_MAPPER.writeValue( directory.resolve( META_FILE ).toFile(), meta );
+        return rows;
+    }
+
+    private static DataOutputStream column( Path directory, String column )
+        throws IOException
+    {
+        return new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( directory.resolve( column ) ),
+                                                               64 * 1024 ) );
+    }
+
+    /**
+     * @param includeWarmup <code>true</code> to aggregate the samples of the warmup phase too
+     */
+    public ColumnarValues includeWarmup( boolean includeWarmup )
+    {
+        this.includeWarmup = includeWarmup;
+        return this;
+    }
+
+    public int size()
+    {
+        return (int) meta.rows;
+    }
+
+    public List<String> getPaths()
+    {
+        return meta.paths;
+    }
+
+    public long getEventTimestamp( int row )
+    {
+        return timestamps.get( row );
+    }
+
+    public int getPathId( int row )
+    {
+        return pathIds.get( row );
+    }
+
+    public String getPath( int row )
+    {
+        return dictionary.getPath( pathIds.get( row ) );
+    }
+
+    public int getStatus( int row )
+    {
+        return statuses.get( row );
+    }
+
+    public int getSize( int row )
+    {
+        return sizes.get( row );
+    }
+
+    public long getResponseTime( int row )
+    {
+        return responseTimes.get( row );
+    }
+
+    public long getLatencyTime( int row )
+    {
+        return latencyTimes.get( row );
+    }
+
+    public boolean isWarmup( int row )
+    {
+        return warmups != null && warmups.get( row ) != 0;
+    }
+
+    /**
+     * @return <code>true</code> if the row is aggregated for the given path id
+     */
+    private boolean selected( int row, int pathId )
+    {
+        return ( pathId == -1 || pathIds.get( row ) == pathId ) && ( includeWarmup || !isWarmup( row ) );
+    }
+
+    /**
+     * @return the id of the path, <code>-1</code> for all the paths and <code>-2</code> for an unknown path
+     */
+    private int pathId( String path )
+    {
+        if ( path == null )
+        {
+            return -1;
+        }
+        int pathId = dictionary.findPathId( path );
+        return pathId < 0 ? -2 : pathId;
+    }
+
+    /**
+     * @param path <code>null</code> for all the paths
+     */
+    public StatusResult statusResult( String path )
+    {
+        int pathId = pathId( path );
+        long[] counts = new long[6];
+        int size = size();
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( selected( i, pathId ) )
+            {
+                int family = statuses.get( i ) / 100;
+                counts[family >= 0 && family < counts.length ? family : 0]++;
+            }
+        }
+        StatusResult statusResult = new StatusResult();
+        for ( int family = 1; family < counts.length; family++ )
+        {
+            statusResult.add( family * 100, counts[family] );
+        }
+        return statusResult;
+    }
+
+    /**
+     * @param path <code>null</code> for all the paths
+     * @return the response durations in nano seconds, use it for percentiles
+     */
+    public Histogram responseTimeHistogram( String path )
+    {
+        return histogram( path, responseTimes );
+    }
+
+    /**
+     * @param path <code>null</code> for all the paths
+     * @return the latency durations in nano seconds, use it for percentiles
+     */
+    public Histogram latencyTimeHistogram( String path )
+    {
+        return histogram( path, latencyTimes );
+    }
+
+    private Histogram histogram( String path, LongBuffer column )
+    {
+        int pathId = pathId( path );
+        Histogram histogram = new Histogram( 3 );
+        int size = size();
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( selected( i, pathId ) )
+            {
+                histogram.recordValue( Math.max( 0, column.get( i ) - timestamps.get( i ) ) );
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @param path <code>null</code> for all the paths
+     * @param width width of the buckets in nano seconds, starting at the smallest event timestamp
+     */
+    public Buckets buckets( String path, long width )
+    {
+        int size = size();
+        long start = Long.MAX_VALUE, end = Long.MIN_VALUE;
+        for ( int i = 0; i < size; i++ )
+        {
+            start = Math.min( start, timestamps.get( i ) );
+            end = Math.max( end, timestamps.get( i ) );
+        }
+        if ( size == 0 )
+        {
+            return new Buckets( 0, width, 0 );
+        }
+        Buckets buckets = new Buckets( start, width, (int) ( ( end - start ) / width ) + 1 );
+        int pathId = pathId( path );
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( selected( i, pathId ) )
+            {
+                int bucket = (int) ( ( timestamps.get( i ) - start ) / width );
+                buckets.counts[bucket]++;
+                buckets.responseTimes[bucket] += Math.max( 0, responseTimes.get( i ) - timestamps.get( i ) );
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Number of samples and sum of their response times per time bucket
+     */
+    public static class Buckets
+    {
+        private final long start;
+
+        private final long width;
+
+        private final long[] counts;
+
+        private final long[] responseTimes;
+
+        Buckets( long start, long width, int size )
+        {
+            this.start = start;
+            this.width = width;
+            this.counts = new long[size];
+            this.responseTimes = new long[size];
+        }
+
+        public long getStart()
+        {
+            return start;
+        }
+
+        public long getWidth()
+        {
+            return width;
+        }
+
+        public int size()
+        {
+            return counts.length;
+        }
+
+        public long getCount( int bucket )
+        {
+            return counts[bucket];
+        }
+
+        /**
+         * @return the mean response time of the bucket in nano seconds, <code>0</code> if empty
+         */
+        public long getMeanResponseTime( int bucket )
+        {
+            return counts[bucket] == 0 ? 0 : responseTimes[bucket] / counts[bucket];
+        }
+    }
+
+    private static class Meta
+    {
+        public long rows;
+
+        public List<String> paths = new ArrayList<>();
+    }
+}
@@ -0,0 +1,85 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hudson.model.Action;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Build action reporting the {@link ValuesIterations} of a run with several iterations:
+ * <code>loadgenerator-iterations/summary</code> returns the summary of each iteration and the mean
+ * and spread of their p99 as json.
+ */
+public class IterationResultsAction
+    implements Action
+{
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final ValuesIterations iterations;
+
+    public IterationResultsAction( ValuesIterations iterations )
+    {
+        this.iterations = iterations;
+    }
+
+    /**
+     * @param path see {@link ValuesFileWriter#getIterationsPath()}
+     */
+    public static IterationResultsAction read( Path path )
+        throws IOException
+    {
+        return new IterationResultsAction( ValuesIterations.read( path ) );
+    }
+
+    public ValuesIterations getIterations()
+    {
+        return iterations;
+    }
+
+    public void doSummary( StaplerRequest req, StaplerResponse rsp )
+        throws IOException, ServletException
+    {
+        rsp.addHeader( "Content-Type", "application/json; charset=utf-8" );
+        OBJECT_MAPPER.writeValue( rsp.getOutputStream(), iterations );
+    }
+
+    @Override
+    public String getIconFileName()
+    {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName()
+    {
+        return null;
+    }
+
+    @Override
+    public String getUrlName()
+    {
+        return PluginConstants.URL_NAME + "-iterations";
+    }
+}
@@ -0,0 +1,164 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hudson.model.Action;
+import hudson.model.Run;
+import hudson.remoting.Channel;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Build action exposing the {@link ValuesLiveMetrics} of a run in progress as json, to be polled by the
+ * build page: <code>loadgenerator-live/windows?since=epochMillis</code> returns the one second windows
+ * ended after <code>since</code> (all the kept windows without it).
+ * <p>
+ * The recording usually runs on an agent: the step starting the run calls {@link #attach(Run, ValuesFileWriter)}
+ * before the {@link ValuesFileWriter} is sent to the agent, the writer then forwards each window to this action
+ * through a remoting proxy. The windows are only kept in memory.
+ */
+public class LiveMetricsAction
+    implements Action
+{
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String liveId;
+
+    private transient Deque<ValuesLiveMetrics.Window> windows;
+
+    public LiveMetricsAction( String liveId )
+    {
+        this.liveId = liveId;
+    }
+
+    public String getLiveId()
+    {
+        return liveId;
+    }
+
+    /**
+     * gives the writer the id of the run and the sink forwarding its windows to the action added to the run
+     */
+    public static LiveMetricsAction attach( Run<?, ?> run, ValuesFileWriter valuesFileWriter )
+    {
+        LiveMetricsAction action = new LiveMetricsAction( run.getExternalizableId() );
+        valuesFileWriter.liveId( action.getLiveId() ).liveSink( new RemoteSink( action ) );
+        run.addAction( action );
+        return action;
+    }
+
+    /**
+     * keeps the window, up to {@link ValuesLiveMetrics#CAPACITY_PROPERTY} of them
+     */
+    public synchronized void addWindow( ValuesLiveMetrics.Window window )
+    {
+        if ( windows == null )
+        {
+            windows = new ArrayDeque<>();
+        }
+        if ( windows.size() >= Math.max( 1, Integer.getInteger( ValuesLiveMetrics.CAPACITY_PROPERTY, 3600 ) ) )
+        {
+            windows.removeFirst();
+        }
+        windows.addLast( window );
+    }
+
+    /**
+     * @return the windows ended after the timestamp (epoch milliseconds), oldest first
+     */
+    public synchronized List<ValuesLiveMetrics.Window> getWindows( long since )
+    {
+        List<ValuesLiveMetrics.Window> result = new ArrayList<>();
+        if ( windows != null )
+        {
+            for ( ValuesLiveMetrics.Window window : windows )
+            {
+                if ( window.getTimestamp() > since )
+                {
+                    result.add( window );
+                }
+            }
+        }
+        return result;
+    }
+
+    public void doWindows( StaplerRequest req, StaplerResponse rsp )
+        throws IOException, ServletException
+    {
+        String since = req.getParameter( "since" );
+        List<ValuesLiveMetrics.Window> windows =
+            getWindows( StringUtils.isNumeric( since ) ? Long.parseLong( since ) : 0 );
+        rsp.addHeader( "Content-Type", "application/json; charset=utf-8" );
+        OBJECT_MAPPER.writeValue( rsp.getOutputStream(), windows );
+    }
+
+    @Override
+    public String getIconFileName()
+    {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName()
+    {
+        return null;
+    }
+
+    @Override
+    public String getUrlName()
+    {
+        return PluginConstants.URL_NAME + "-live";
+    }
+
+    /**
+     * Sink of the controller, replaced by a remoting proxy calling it back when serialized to an agent
+     */
+    private static class RemoteSink
+        implements ValuesLiveMetrics.Sink, Serializable
+    {
+        private final transient LiveMetricsAction action;
+
+        RemoteSink( LiveMetricsAction action )
+        {
+            this.action = action;
+        }
+
+        @Override
+        public void onWindow( ValuesLiveMetrics.Window window )
+        {
+            action.addWindow( window );
+        }
+
+        private Object writeReplace()
+        {
+            Channel channel = Channel.current();
+            return channel == null ? this : channel.export( ValuesLiveMetrics.Sink.class, this );
+        }
+    }
+}
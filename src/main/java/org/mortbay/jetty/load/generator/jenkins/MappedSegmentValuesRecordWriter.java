@@ -0,0 +1,207 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the samples using {@link BinaryValuesFormat} into memory mapped segments of a fixed size,
+ * named <code>path.0</code>, <code>path.1</code>... A new segment is started when the current one is full.
+ * Each segment starts with the header and the whole dictionary so it can be read on its own.
+ * <p>
+ * Records are visible to the OS as soon as they are written so if the process dies the segments
+ * are still readable up to the last record, the unused end of a segment is zero filled which reads as
+ * {@link BinaryValuesFormat#END}. On close the last segment is truncated to its written size.
+ * <p>
+ * A segment is unmapped as soon as it is complete rather than when its buffer is garbage collected.
+ */
+public class MappedSegmentValuesRecordWriter
+    extends AbstractBinaryValuesRecordWriter
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( MappedSegmentValuesRecordWriter.class );
+
+    public static final int MIN_SEGMENT_SIZE = 64 * 1024;
+
+    private static final int PAGE_SIZE = 4096;
+
+    private final String basePath;
+
+    private final int segmentSize;
+
+    private final boolean preallocate;
+
+    private int segmentIndex = -1;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    /**
+     * @param path the base path of the segments
+     * @param dictionary the dictionary of the run
+     * @param segmentSize size in bytes of each segment
+     * @param preallocate if <code>true</code> all pages of a new segment are touched when it is created
+     * rather than when records are written
+     */
+    public MappedSegmentValuesRecordWriter( Path path, ValuesDictionary dictionary, long segmentSize,
+                                            boolean preallocate )
+        throws IOException
+    {
+        super( dictionary );
+        this.basePath = path.toAbsolutePath().toString();
+        this.segmentSize = (int) Math.min( Math.max( segmentSize, MIN_SEGMENT_SIZE ), Integer.MAX_VALUE );
+        this.preallocate = preallocate;
+        // remove segments of a previous run
+        ValuesFormat.deleteSegments( path );
+        nextSegment();
+    }
+
+    public int getSegmentIndex()
+    {
+        return segmentIndex;
+    }
+
+    private void nextSegment()
+        throws IOException
+    {
+        closeSegment( false );
+        segmentIndex++;
+        channel = FileChannel.open( ValuesFormat.segmentPath( Paths.get( basePath ), segmentIndex ), //
+                                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, //
+                                    StandardOpenOption.READ, StandardOpenOption.WRITE );
+        buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, segmentSize );
+        if ( preallocate )
+        {
+            for ( int i = 0; i < segmentSize; i += PAGE_SIZE )
+            {
+                buffer.put( i, BinaryValuesFormat.END );
+            }
+        }
+        BinaryValuesFormat.writeHeader( buffer );
+        resetDictionary();
+    }
+
+    private void closeSegment( boolean truncate )
+        throws IOException
+    {
+        if ( channel == null )
+        {
+            return;
+        }
+        try
+        {
+            buffer.force();
+            int size = buffer.position();
+            // a file cannot be truncated while mapped on some platforms
+            unmap( buffer );
+            buffer = null;
+            if ( truncate )
+            {
+                channel.truncate( size );
+            }
+        }
+        finally
+        {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * releases the mapping without waiting for the buffer to be garbage collected, the buffer must not be used
+     * anymore
+     */
+    private static void unmap( MappedByteBuffer buffer )
+    {
+        try
+        {
+            try
+            {
+                // java 9+
+                Class<?> unsafeClass = Class.forName( "sun.misc.Unsafe" );
+                Method invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+                Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+                theUnsafe.setAccessible( true );
+                invokeCleaner.invoke( theUnsafe.get( null ), buffer );
+            }
+            catch ( NoSuchMethodException e )
+            {
+                // java 8
+                Method cleanerMethod = buffer.getClass().getMethod( "cleaner" );
+                cleanerMethod.setAccessible( true );
+                Object cleaner = cleanerMethod.invoke( buffer );
+                cleaner.getClass().getMethod( "clean" ).invoke( cleaner );
+            }
+        }
+        catch ( ReflectiveOperationException | RuntimeException e )
+        {
+            LOGGER.debug( "cannot unmap segment, left to the garbage collector: {}", e.getMessage() );
+        }
+    }
+
+    @Override
+    protected ByteBuffer buffer()
+    {
+        return buffer;
+    }
+
+    @Override
+    protected void ensureRemaining( int size )
+        throws IOException
+    {
+        if ( buffer.remaining() < size )
+        {
+            if ( size > segmentSize - BinaryValuesFormat.HEADER_SIZE )
+            {
+                throw new IOException( "a record of " + size + " bytes with its dictionary entries does not fit in "
+                                           + "a segment of " + segmentSize + " bytes" );
+            }
+            nextSegment();
+        }
+    }
+
+    @Override
+    public void flush()
+        throws IOException
+    {
+        if ( buffer != null )
+        {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        closeSegment( true );
+    }
+}
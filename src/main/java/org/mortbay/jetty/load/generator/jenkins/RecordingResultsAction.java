@@ -0,0 +1,112 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hudson.model.Action;
+import hudson.model.Run;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Build action reporting the status counters and the back pressure counters of a run:
+ * <code>loadgenerator-recording/summary</code> returns the {@link ValuesStatusSummary} and the
+ * {@link ValuesRecordingStats} as json.
+ */
+public class RecordingResultsAction
+    implements Action
+{
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final ValuesStatusSummary statusSummary;
+
+    private final ValuesRecordingStats recordingStats;
+
+    public RecordingResultsAction( ValuesStatusSummary statusSummary, ValuesRecordingStats recordingStats )
+    {
+        this.statusSummary = statusSummary;
+        this.recordingStats = recordingStats;
+    }
+
+    /**
+     * @param statusSummaryPath see {@link ValuesFileWriter#getStatusSummaryPath()}
+     * @param recordingStatsPath see {@link ValuesFileWriter#getRecordingStatsPath()}
+     */
+    public static RecordingResultsAction read( Path statusSummaryPath, Path recordingStatsPath )
+        throws IOException
+    {
+        return new RecordingResultsAction( ValuesStatusSummary.read( statusSummaryPath ), //
+                                           ValuesRecordingStats.read( recordingStatsPath ) );
+    }
+
+    /**
+     * adds the counters of the ended run of the writer to the run
+     */
+    public static RecordingResultsAction attach( Run<?, ?> run, ValuesFileWriter valuesFileWriter )
+    {
+        RecordingResultsAction action = new RecordingResultsAction( //
+            valuesFileWriter.getStatusCounters().getSummary(), valuesFileWriter.getRecordingStats() );
+        run.addAction( action );
+        return action;
+    }
+
+    public ValuesStatusSummary getStatusSummary()
+    {
+        return statusSummary;
+    }
+
+    public ValuesRecordingStats getRecordingStats()
+    {
+        return recordingStats;
+    }
+
+    public void doSummary( StaplerRequest req, StaplerResponse rsp )
+        throws IOException, ServletException
+    {
+        Map<String, Object> summary = new LinkedHashMap<>( 2 );
+        summary.put( "status", statusSummary );
+        summary.put( "recording", recordingStats );
+        rsp.addHeader( "Content-Type", "application/json; charset=utf-8" );
+        OBJECT_MAPPER.writeValue( rsp.getOutputStream(), summary );
+    }
+
+    @Override
+    public String getIconFileName()
+    {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName()
+    {
+        return null;
+    }
+
+    @Override
+    public String getUrlName()
+    {
+        return PluginConstants.URL_NAME + "-recording";
+    }
+}
@@ -0,0 +1,146 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Splits the samples in segments <code>path.0</code>, <code>path.1</code>... each written by its own
+ * {@link ValuesRecordWriter}. A new segment is started once the current one reached a size (before
+ * compression) or has been opened for a wall clock window. Each closed segment is appended to the
+ * {@link ValuesSegmentIndex} so readers can only load the segments of the time range they need.
+ */
+public class RollingValuesRecordWriter
+    implements ValuesRecordWriter
+{
+
+    /**
+     * roll the samples file when a segment reached this size in bytes
+     */
+    public static final String SIZE_PROPERTY = "loadgenerator.values.rotation.size";
+
+    /**
+     * roll the samples file when a segment has been opened for this number of seconds
+     */
+    public static final String WINDOW_PROPERTY = "loadgenerator.values.rotation.window";
+
+    @FunctionalInterface
+    public interface SegmentFactory
+    {
+        ValuesRecordWriter open( Path segmentPath )
+            throws IOException;
+    }
+
+    private final Path path;
+
+    private final SegmentFactory segmentFactory;
+
+    private final long maxBytes;
+
+    private final long windowMillis;
+
+    private ValuesRecordWriter current;
+
+    private ValuesSegmentIndex.Segment segment;
+
+    private long writtenBytes;
+
+    /**
+     * @param maxBytes roll when the segment reached this size, <code>0</code> to disable
+     * @param windowMillis roll when the segment has been opened for this time, <code>0</code> to disable
+     */
+    public RollingValuesRecordWriter( Path path, SegmentFactory segmentFactory, long maxBytes, long windowMillis )
+        throws IOException
+    {
+        this.path = path;
+        this.segmentFactory = segmentFactory;
+        this.maxBytes = maxBytes;
+        this.windowMillis = windowMillis;
+        // remove segments of a previous run
+        ValuesFormat.deleteSegments( path );
+        ValuesSegmentIndex.delete( path );
+        roll();
+    }
+
+    @Override
+    public void write( Values values )
+        throws IOException
+    {
+        if ( segment.getRecords() > 0 && ( ( maxBytes > 0 && current.getWrittenBytes() >= maxBytes ) //
+            || ( windowMillis > 0 && System.currentTimeMillis() - segment.getStartMillis() >= windowMillis ) ) )
+        {
+            roll();
+        }
+        current.write( values );
+        segment.add( values.getEventTimestamp() );
+    }
+
+    private void roll()
+        throws IOException
+    {
+        closeSegment();
+        int index = segment == null ? 0 : segment.getIndex() + 1;
+        current = segmentFactory.open( ValuesFormat.segmentPath( path, index ) );
+        segment = new ValuesSegmentIndex.Segment( index ).startMillis( System.currentTimeMillis() );
+    }
+
+    private void closeSegment()
+        throws IOException
+    {
+        if ( current == null )
+        {
+            return;
+        }
+        try
+        {
+            current.close();
+            writtenBytes += current.getWrittenBytes();
+        }
+        finally
+        {
+            current = null;
+            segment.endMillis( System.currentTimeMillis() );
+            if ( segment.getRecords() > 0 )
+            {
+                ValuesSegmentIndex.append( path, segment );
+            }
+        }
+    }
+
+    @Override
+    public void flush()
+        throws IOException
+    {
+        current.flush();
+    }
+
+    @Override
+    public long getWrittenBytes()
+    {
+        return writtenBytes + ( current == null ? 0 : current.getWrittenBytes() );
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        closeSegment();
+    }
+}
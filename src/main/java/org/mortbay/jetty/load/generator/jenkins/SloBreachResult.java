@@ -0,0 +1,62 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+/**
+ * Reflects in the build a run aborted by its {@link ValuesSloEvaluator}.
+ */
+public final class SloBreachResult
+{
+
+    private SloBreachResult()
+    {
+        // no op
+    }
+
+    /**
+     * marks the build unstable if the recording has been aborted, to be called by the step running the load
+     * generator once {@link ValuesFileWriter#onEnd(org.mortbay.jetty.load.generator.LoadGenerator)} returned
+     *
+     * @return <code>true</code> if the run has been aborted
+     */
+    public static boolean apply( Run<?, ?> run, TaskListener taskListener, ValuesFileWriter valuesFileWriter )
+    {
+        return apply( run, taskListener, valuesFileWriter.getRecordingStats() );
+    }
+
+    /**
+     * marks the build unstable if the recording has been aborted
+     *
+     * @param stats the stats written when the run ended, see {@link ValuesFileWriter#getRecordingStatsPath()}
+     * @return <code>true</code> if the run has been aborted
+     */
+    public static boolean apply( Run<?, ?> run, TaskListener taskListener, ValuesRecordingStats stats )
+    {
+        if ( stats == null || stats.getAbortReason() == null )
+        {
+            return false;
+        }
+        taskListener.getLogger().println( "Load generator aborted: " + stats.getAbortReason() );
+        run.setResult( Result.UNSTABLE );
+        return true;
+    }
+}
@@ -7,6 +7,34 @@ public class StatusResult
     protected long _1xx, _2xx, _3xx, _4xx, _5xx;
 
 
+    /**
+     * adds <code>count</code> responses of the http status to its family, other statuses are ignored
+     */
+    public StatusResult add( int status, long count )
+    {
+        switch ( status / 100 )
+        {
+            case 1:
+                _1xx += count;
+                break;
+            case 2:
+                _2xx += count;
+                break;
+            case 3:
+                _3xx += count;
+                break;
+            case 4:
+                _4xx += count;
+                break;
+            case 5:
+                _5xx += count;
+                break;
+            default:
+                // failures without status
+        }
+        return this;
+    }
+
     public String getBuildId()
     {
         return buildId;
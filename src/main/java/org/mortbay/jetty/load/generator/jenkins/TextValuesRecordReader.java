@@ -0,0 +1,150 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Reads the pipe delimited lines written by {@link TextValuesRecordWriter}, compressed or not.
+ * Methods and paths are interned in the dictionary as they are met.
+ */
+public class TextValuesRecordReader
+    implements ValuesRecordReader
+{
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream inputStream;
+
+    private final ValuesDictionary dictionary;
+
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream( 128 );
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int index, limit;
+
+    private long position;
+
+    public TextValuesRecordReader( Path path, ValuesDictionary dictionary )
+        throws IOException
+    {
+        this( ValuesCompression.newInputStream( path ), dictionary, 0 );
+    }
+
+    /**
+     * @param inputStream uncompressed content of a text file starting at the line <code>offset</code>
+     */
+    public TextValuesRecordReader( InputStream inputStream, ValuesDictionary dictionary, long offset )
+    {
+        this.inputStream = inputStream;
+        this.dictionary = dictionary;
+        this.position = offset;
+    }
+
+    @Override
+    public boolean read( Values values )
+        throws IOException
+    {
+        line.reset();
+        while ( true )
+        {
+            if ( index == limit )
+            {
+                limit = inputStream.read( buffer );
+                index = 0;
+                if ( limit <= 0 )
+                {
+                    // an incomplete last line is ignored
+                    limit = 0;
+                    return false;
+                }
+            }
+            int start = index;
+            while ( index < limit && buffer[index] != '\n' )
+            {
+                index++;
+            }
+            line.write( buffer, start, index - start );
+            position += index - start;
+            if ( index < limit )
+            {
+                // skip the new line
+                index++;
+                position++;
+                parse( line.toString( StandardCharsets.UTF_8.name() ).trim(), values );
+                return true;
+            }
+        }
+    }
+
+    /**
+     * the path may contain the delimiter, the other fields can't
+     */
+    private void parse( String line, Values values )
+    {
+        // the latency is numeric so a trailing marker is not ambiguous
+        boolean warmup = line.endsWith( TextValuesRecordWriter.WARMUP_SUFFIX );
+        if ( warmup )
+        {
+            line = line.substring( 0, line.length() - TextValuesRecordWriter.WARMUP_SUFFIX.length() );
+        }
+        int first = line.indexOf( '|' );
+        int second = line.indexOf( '|', first + 1 );
+        int[] last = new int[4];
+        int index = line.length();
+        for ( int i = 3; i >= 0; i-- )
+        {
+            index = line.lastIndexOf( '|', index - 1 );
+            last[i] = index;
+        }
+        if ( first < 0 || second < 0 || last[0] < second )
+        {
+            throw new IllegalArgumentException( "not a values line: " + line );
+        }
+        String method = ValuesDictionary.fromLabel( line.substring( first + 1, second ) );
+        String path = ValuesDictionary.fromLabel( line.substring( second + 1, last[0] ) );
+        values.eventTimestamp( Long.parseLong( line.substring( 0, first ) ) ) //
+            .method( method ) //
+            .methodId( dictionary.methodId( method ) ) //
+            .path( path ) //
+            .pathId( dictionary.pathId( path ) ) //
+            .status( Integer.parseInt( line.substring( last[0] + 1, last[1] ) ) ) //
+            .size( Long.parseLong( line.substring( last[1] + 1, last[2] ) ) ) //
+            .responseTime( Long.parseLong( line.substring( last[2] + 1, last[3] ) ) ) //
+            .latencyTime( Long.parseLong( line.substring( last[3] + 1 ) ) ) //
+            .warmup( warmup );
+    }
+
+    @Override
+    public long getPosition()
+    {
+        return position;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        inputStream.close();
+    }
+}
@@ -0,0 +1,133 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Historical pipe delimited format: one line per sample
+ * <code>timestamp|method|path|status|size|responseTime|latencyTime</code>, followed by {@link #WARMUP_SUFFIX}
+ * for the samples of the warmup phase so the lines of the measured phase keep the historical layout.
+ * Method and path are resolved from the ids using the dictionary of the run.
+ */
+public class TextValuesRecordWriter
+    implements ValuesRecordWriter
+{
+
+    /**
+     * marks the samples of the warmup phase
+     */
+    public static final String WARMUP_SUFFIX = "|W";
+
+    /**
+     * written by {@link BufferedWriter#newLine()}, ascii
+     */
+    private static final int LINE_SEPARATOR_BYTES = System.lineSeparator().length();
+
+    private final BufferedWriter bufferedWriter;
+
+    private final ValuesDictionary dictionary;
+
+    private long writtenBytes;
+
+    public TextValuesRecordWriter( OutputStream outputStream, ValuesDictionary dictionary )
+    {
+        this.bufferedWriter = new BufferedWriter( new OutputStreamWriter( outputStream, StandardCharsets.UTF_8 ) );
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void write( Values values )
+        throws IOException
+    {
+        StringBuilder sb = new StringBuilder( 128 ) //
+            .append( values.getEventTimestamp() ).append( '|' ) //
+            .append( dictionary.getMethodLabel( values.getMethodId() ) ).append( '|' ) //
+            .append( dictionary.getPathLabel( values.getPathId() ) ).append( '|' ) //
+            .append( values.getStatus() ).append( '|' ) //
+            .append( values.getSize() ).append( '|' ) //
+            .append( values.getResponseTime() ).append( '|' ) //
+            .append( values.getLatencyTime() );
+        if ( values.isWarmup() )
+        {
+            sb.append( WARMUP_SUFFIX );
+        }
+
+        this.bufferedWriter.write( sb.toString() );
+        this.bufferedWriter.newLine();
+        this.writtenBytes += utf8Length( sb ) + LINE_SEPARATOR_BYTES;
+    }
+
+    /**
+     * @return the number of bytes of the chars encoded in utf-8, without encoding them
+     */
+    static int utf8Length( CharSequence chars )
+    {
+        int length = 0;
+        for ( int i = 0; i < chars.length(); i++ )
+        {
+            char c = chars.charAt( i );
+            if ( c < 0x80 )
+            {
+                length++;
+            }
+            else if ( c < 0x800 )
+            {
+                length += 2;
+            }
+            else if ( Character.isHighSurrogate( c ) && i + 1 < chars.length()
+                && Character.isLowSurrogate( chars.charAt( i + 1 ) ) )
+            {
+                length += 4;
+                i++;
+            }
+            else
+            {
+                // a lone surrogate is replaced by '?'
+                length += Character.isSurrogate( c ) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public long getWrittenBytes()
+    {
+        return writtenBytes;
+    }
+
+    @Override
+    public void flush()
+        throws IOException
+    {
+        this.bufferedWriter.flush();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        this.bufferedWriter.flush();
+        this.bufferedWriter.close();
+    }
+}
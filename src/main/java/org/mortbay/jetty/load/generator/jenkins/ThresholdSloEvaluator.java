@@ -0,0 +1,162 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aborts a run when one of the thresholds is breached for {@link #consecutiveWindows(int)} windows in a row,
+ * after {@link #warmupWindows(int)} windows. A threshold of <code>0</code> is not checked.
+ */
+public class ThresholdSloEvaluator
+    implements ValuesSloEvaluator
+{
+
+    /**
+     * nano seconds
+     */
+    private long maxP99;
+
+    private double max5xxRatio;
+
+    private double minThroughputRatio;
+
+    /**
+     * overrides the rate of the load generator configuration if set
+     */
+    private long expectedQps;
+
+    private int warmupWindows = 10;
+
+    private int consecutiveWindows = 3;
+
+    private transient int windows, breaches;
+
+    public ThresholdSloEvaluator maxP99( long maxP99, TimeUnit unit )
+    {
+        this.maxP99 = unit.toNanos( maxP99 );
+        return this;
+    }
+
+    /**
+     * @param max5xxRatio highest ratio of 5xx responses, between 0 and 1
+     */
+    public ThresholdSloEvaluator max5xxRatio( double max5xxRatio )
+    {
+        this.max5xxRatio = max5xxRatio;
+        return this;
+    }
+
+    /**
+     * @param minThroughputRatio lowest fraction of the expected qps, between 0 and 1
+     */
+    public ThresholdSloEvaluator minThroughputRatio( double minThroughputRatio )
+    {
+        this.minThroughputRatio = minThroughputRatio;
+        return this;
+    }
+
+    public ThresholdSloEvaluator expectedQps( long expectedQps )
+    {
+        this.expectedQps = expectedQps;
+        return this;
+    }
+
+    public ThresholdSloEvaluator warmupWindows( int warmupWindows )
+    {
+        this.warmupWindows = warmupWindows;
+        return this;
+    }
+
+    public ThresholdSloEvaluator consecutiveWindows( int consecutiveWindows )
+    {
+        this.consecutiveWindows = consecutiveWindows;
+        return this;
+    }
+
+    @Override
+    public String evaluate( ValuesLiveMetrics.Window window, long expectedQps )
+    {
+        if ( ++windows <= warmupWindows )
+        {
+            return null;
+        }
+        String breach = breach( window.getTotal(), this.expectedQps > 0 ? this.expectedQps : expectedQps );
+        if ( breach == null )
+        {
+            breaches = 0;
+            return null;
+        }
+        return ++breaches >= consecutiveWindows ? breach + " for " + breaches + " seconds" : null;
+    }
+
+    @Override
+    public void reset()
+    {
+        windows = 0;
+        breaches = 0;
+    }
+
+    private String breach( ValuesLiveMetrics.Aggregate total, long expectedQps )
+    {
+        if ( maxP99 > 0 && total.getP99() > maxP99 )
+        {
+            return "p99 " + TimeUnit.NANOSECONDS.toMillis( total.getP99() ) + " ms over " //
+                + TimeUnit.NANOSECONDS.toMillis( maxP99 ) + " ms";
+        }
+        if ( max5xxRatio > 0 && total.getCount() > 0 && total.get5xxRatio() > max5xxRatio )
+        {
+            return "5xx ratio " + total.get5xxRatio() + " over " + max5xxRatio;
+        }
+        if ( minThroughputRatio > 0 && expectedQps > 0 && total.getThroughput() < minThroughputRatio * expectedQps )
+        {
+            return "throughput " + total.getThroughput() + " under " + minThroughputRatio + " of " + expectedQps;
+        }
+        return null;
+    }
+
+    public long getMaxP99()
+    {
+        return maxP99;
+    }
+
+    public double getMax5xxRatio()
+    {
+        return max5xxRatio;
+    }
+
+    public double getMinThroughputRatio()
+    {
+        return minThroughputRatio;
+    }
+
+    public long getExpectedQps()
+    {
+        return expectedQps;
+    }
+
+    public int getWarmupWindows()
+    {
+        return warmupWindows;
+    }
+
+    public int getConsecutiveWindows()
+    {
+        return consecutiveWindows;
+    }
+}
@@ -36,21 +36,41 @@ public class Values
     private String path;
 
     /**
-     * the value in nano seconds
+     * id of the path in the {@link ValuesDictionary} of the run
+     */
+    private int pathId;
+
+    /**
+     * nano time of the end of the response, see {@link #getResponseDuration()}
      */
     private long responseTime;
 
     /**
-     * the value in nano seconds
+     * nano time of the beginning of the response, see {@link #getLatencyDuration()}
      */
     private long latencyTime;
 
     private String method;
 
+    /**
+     * id of the method in the {@link ValuesDictionary} of the run
+     */
+    private int methodId;
+
     private long size;
 
     private int status;
 
+    /**
+     * <code>true</code> if the sample has been recorded during the warmup phase of the run
+     */
+    private boolean warmup;
+
+    /**
+     * index of the iteration of the run, starting at 0
+     */
+    private int iteration;
+
     public Values()
     {
         // no op
@@ -72,6 +92,22 @@ public class Values
         return this;
     }
 
+    public int getPathId()
+    {
+        return pathId;
+    }
+
+    public void setPathId( int pathId )
+    {
+        this.pathId = pathId;
+    }
+
+    public Values pathId( int pathId )
+    {
+        this.pathId = pathId;
+        return this;
+    }
+
     public long getResponseTime()
     {
         return responseTime;
@@ -104,6 +140,22 @@ public class Values
         return this;
     }
 
+    /**
+     * @return nano seconds between the request and the end of the response
+     */
+    public long getResponseDuration()
+    {
+        return Math.max( 0, responseTime - eventTimestamp );
+    }
+
+    /**
+     * @return nano seconds between the request and the beginning of the response
+     */
+    public long getLatencyDuration()
+    {
+        return Math.max( 0, latencyTime - eventTimestamp );
+    }
+
     public String getMethod()
     {
         return method;
@@ -120,6 +172,22 @@ public class Values
         return this;
     }
 
+    public int getMethodId()
+    {
+        return methodId;
+    }
+
+    public void setMethodId( int methodId )
+    {
+        this.methodId = methodId;
+    }
+
+    public Values methodId( int methodId )
+    {
+        this.methodId = methodId;
+        return this;
+    }
+
     public long getSize()
     {
         return size;
@@ -168,12 +236,64 @@ public class Values
         return this;
     }
 
+    public boolean isWarmup()
+    {
+        return warmup;
+    }
+
+    public void setWarmup( boolean warmup )
+    {
+        this.warmup = warmup;
+    }
+
+    public Values warmup( boolean warmup )
+    {
+        this.warmup = warmup;
+        return this;
+    }
+
+    public int getIteration()
+    {
+        return iteration;
+    }
+
+    public void setIteration( int iteration )
+    {
+        this.iteration = iteration;
+    }
+
+    public Values iteration( int iteration )
+    {
+        this.iteration = iteration;
+        return this;
+    }
+
     @Override
     public String toString()
     {
-        return "Values{" + "eventTimestamp=" + eventTimestamp + ", path='" + path + '\'' + ", responseTime="
-            + responseTime + ", latencyTime=" + latencyTime + ", method='" + method + '\'' + ", size=" + size
-            + ", status=" + status + '}';
+        return "Values{" + "eventTimestamp=" + eventTimestamp + ", path='" + path + '\'' + ", pathId=" + pathId
+            + ", responseTime=" + responseTime + ", latencyTime=" + latencyTime + ", method='" + method + '\''
+            + ", methodId=" + methodId + ", size=" + size + ", status=" + status + ", warmup=" + warmup
+            + ", iteration=" + iteration + '}';
+    }
+
+    /**
+     * copies all the fields of the given values into this one
+     */
+    public Values copy( Values values )
+    {
+        this.eventTimestamp = values.eventTimestamp;
+        this.path = values.path;
+        this.pathId = values.pathId;
+        this.responseTime = values.responseTime;
+        this.latencyTime = values.latencyTime;
+        this.method = values.method;
+        this.methodId = values.methodId;
+        this.size = values.size;
+        this.status = values.status;
+        this.warmup = values.warmup;
+        this.iteration = values.iteration;
+        return this;
     }
 
     public Resource.Info getInfo()
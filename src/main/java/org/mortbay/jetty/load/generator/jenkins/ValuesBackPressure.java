@@ -0,0 +1,51 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Locale;
+
+/**
+ * What a load generator thread does when the ring buffer is full because the consumers are late.
+ */
+public enum ValuesBackPressure
+{
+    /**
+     * wait for a free slot, the generated load is throttled by the recording
+     */
+    BLOCK,
+    /**
+     * don't record the sample but count it
+     */
+    DROP,
+    /**
+     * keep a copy of the sample in a bounded overflow queue published as soon as the ring buffer has room,
+     * samples are dropped and counted when the overflow queue is full too
+     */
+    SPILL;
+
+    /**
+     * @return {@link #BLOCK} if value is empty
+     */
+    public static ValuesBackPressure of( String value )
+    {
+        return StringUtils.isBlank( value ) ? BLOCK : valueOf( value.trim().toUpperCase( Locale.ENGLISH ) );
+    }
+}
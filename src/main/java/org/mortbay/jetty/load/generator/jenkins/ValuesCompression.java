@@ -0,0 +1,119 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of the samples files, chosen per run. Compression happens on the consumer thread while writing,
+ * with the fastest deflate level so disk and transfer volume drop without the writer falling behind.
+ */
+public enum ValuesCompression
+{
+    NONE( "" ),
+    GZIP( ".gz" );
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String suffix;
+
+    ValuesCompression( String suffix )
+    {
+        this.suffix = suffix;
+    }
+
+    /**
+     * @return the file name suffix of the compressed files, empty for {@link #NONE}
+     */
+    public String getSuffix()
+    {
+        return suffix;
+    }
+
+    /**
+     * @return the path with the suffix of this compression, unchanged if it already ends with it
+     */
+    public Path withSuffix( Path path )
+    {
+        String file = path.toString();
+        return file.endsWith( suffix ) ? path : Paths.get( file + suffix );
+    }
+
+    public OutputStream newOutputStream( Path path )
+        throws IOException
+    {
+        OutputStream outputStream = Files.newOutputStream( path );
+        switch ( this )
+        {
+            case GZIP:
+                return new FastGZIPOutputStream( new BufferedOutputStream( outputStream, BUFFER_SIZE ), BUFFER_SIZE );
+            default:
+                return outputStream;
+        }
+    }
+
+    /**
+     * @return a stream on the file content, decompressed if the file has been compressed
+     */
+    public static InputStream newInputStream( Path path )
+        throws IOException
+    {
+        InputStream inputStream = new BufferedInputStream( Files.newInputStream( path ), BUFFER_SIZE );
+        inputStream.mark( 2 );
+        int magic = inputStream.read() | ( inputStream.read() << 8 );
+        inputStream.reset();
+        return magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream( inputStream, BUFFER_SIZE ) : inputStream;
+    }
+
+    /**
+     * @return <code>true</code> if the file has been compressed
+     */
+    public static boolean isCompressed( Path path )
+        throws IOException
+    {
+        try (InputStream inputStream = Files.newInputStream( path ))
+        {
+            return ( inputStream.read() | ( inputStream.read() << 8 ) ) == GZIPInputStream.GZIP_MAGIC;
+        }
+    }
+
+    /**
+     * gzip with the fastest deflate level
+     */
+    private static class FastGZIPOutputStream
+        extends GZIPOutputStream
+    {
+        FastGZIPOutputStream( OutputStream outputStream, int size )
+            throws IOException
+        {
+            super( outputStream, size );
+            def.setLevel( Deflater.BEST_SPEED );
+        }
+    }
+}
@@ -0,0 +1,179 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps the few distinct methods and paths of a run to small sequential ids so the ring buffer events
+ * and the binary files only carry ids.
+ * <p>
+ * Lookups of already known values are lock free and don't allocate, adding a value is synchronized.
+ * Values are resolved from ids without locking, so the consumer thread can read what producers added.
+ * <p>
+ * <code>null</code> has its own id, distinct from the empty string. Values longer than
+ * {@link BinaryValuesFormat#MAX_VALUE_LENGTH} utf-8 bytes are stored truncated and share the id of their
+ * truncated value, so ids stay the same once written to and read from a binary file.
+ */
+public class ValuesDictionary
+{
+
+    /**
+     * label of a <code>null</code> value where a key or text is required, see {@link #getPathLabel(int)},
+     * not a valid method nor path
+     */
+    public static final String NULL_LABEL = "<null>";
+
+    private final Entries methods = new Entries();
+
+    private final Entries paths = new Entries();
+
+    public int methodId( String method )
+    {
+        return methods.intern( method );
+    }
+
+    public int pathId( String path )
+    {
+        return paths.intern( path );
+    }
+
+    /**
+     * @return the id of the path or <code>-1</code> if unknown
+     */
+    public int findPathId( String path )
+    {
+        return paths.find( path );
+    }
+
+    public String getMethod( int id )
+    {
+        return methods.get( id );
+    }
+
+    /**
+     * @return the method or {@link #NULL_LABEL} for a <code>null</code> method
+     */
+    public String getMethodLabel( int id )
+    {
+        String method = methods.get( id );
+        return method == null ? NULL_LABEL : method;
+    }
+
+    public String getPath( int id )
+    {
+        return paths.get( id );
+    }
+
+    /**
+     * @return the path or {@link #NULL_LABEL} for a <code>null</code> path, to be used as a key or a tag
+     */
+    public String getPathLabel( int id )
+    {
+        String path = paths.get( id );
+        return path == null ? NULL_LABEL : path;
+    }
+
+    /**
+     * @return <code>null</code> for {@link #NULL_LABEL}, the label otherwise
+     */
+    public static String fromLabel( String label )
+    {
+        return NULL_LABEL.equals( label ) ? null : label;
+    }
+
+    public int getMethodCount()
+    {
+        return methods.size();
+    }
+
+    public int getPathCount()
+    {
+        return paths.size();
+    }
+
+    private static class Entries
+    {
+        private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+        private volatile String[] values = new String[0];
+
+        /**
+         * the map cannot hold a null key, <code>-1</code> until null is added
+         */
+        private volatile int nullId = -1;
+
+        int intern( String value )
+        {
+            int id = find( value );
+            return id < 0 ? add( value ) : id;
+        }
+
+        private synchronized int add( String original )
+        {
+            String value = BinaryValuesFormat.truncateDictionaryValue( original );
+            int id = find( value );
+            if ( id < 0 )
+            {
+                String[] newValues = Arrays.copyOf( values, values.length + 1 );
+                id = values.length;
+                newValues[id] = value;
+                // publish the value before the id
+                values = newValues;
+                if ( value == null )
+                {
+                    nullId = id;
+                }
+                else
+                {
+                    ids.put( value, id );
+                }
+            }
+            if ( original != null && !original.equals( value ) )
+            {
+                // next lookups of the long value stay lock free
+                ids.put( original, id );
+            }
+            return id;
+        }
+
+        int find( String value )
+        {
+            if ( value == null )
+            {
+                return nullId;
+            }
+            Integer id = ids.get( value );
+            return id == null ? -1 : id;
+        }
+
+        String get( int id )
+        {
+            return values[id];
+        }
+
+        int size()
+        {
+            return values.length;
+        }
+    }
+
+}
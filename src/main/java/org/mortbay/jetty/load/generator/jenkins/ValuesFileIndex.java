@@ -0,0 +1,316 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Sparse index of a samples file, stored as json next to it: every {@link #INTERVAL_PROPERTY} records a block
+ * with the offset of its first record, the min and max event timestamps and the ids of the paths it contains.
+ * Samples are in publish order so the timestamps of consecutive blocks can overlap.
+ * The methods and paths of the file are stored in id order to rebuild the dictionary before seeking.
+ */
+public class ValuesFileIndex
+    implements Serializable
+{
+
+    /**
+     * records per block, default 4096
+     */
+    public static final String INTERVAL_PROPERTY = "loadgenerator.values.index.interval";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private ValuesFormat format;
+
+    private boolean compressed;
+
+    private long fileSize;
+
+    private long lastModified;
+
+    private List<String> methods = new ArrayList<>();
+
+    private List<String> paths = new ArrayList<>();
+
+    private List<Block> blocks = new ArrayList<>();
+
+    /**
+     * @return path of the index of the samples file
+     */
+    public static Path indexPath( Path path )
+    {
+        return Paths.get( path.toString() + ".idx" );
+    }
+
+    /**
+     * @return the index of the samples file, read if up to date otherwise built and written
+     */
+    public static ValuesFileIndex load( Path path )
+        throws IOException
+    {
+        Path indexPath = indexPath( path );
+        if ( Files.exists( indexPath ) )
+        {
+            ValuesFileIndex index = OBJECT_MAPPER.readValue( indexPath.toFile(), ValuesFileIndex.class );
+            if ( index.fileSize == Files.size( path ) //
+                && index.lastModified == Files.getLastModifiedTime( path ).toMillis() )
+            {
+                return index;
+            }
+        }
+        ValuesFileIndex index = build( path, Integer.getInteger( INTERVAL_PROPERTY, 4096 ) );
+        OBJECT_MAPPER.writeValue( indexPath.toFile(), index );
+        return index;
+    }
+
+    /**
+     * scans the whole samples file
+     */
+    public static ValuesFileIndex build( Path path, int interval )
+        throws IOException
+    {
+        ValuesFileIndex index = new ValuesFileIndex();
+        index.format = ValuesFileReader.detectFormat( path );
+        index.compressed = ValuesCompression.isCompressed( path );
+        index.fileSize = Files.size( path );
+        index.lastModified = Files.getLastModifiedTime( path ).toMillis();
+        ValuesDictionary dictionary = new ValuesDictionary();
+        try (ValuesRecordReader reader = ValuesFileReader.newRecordReader( index.format, path, dictionary ))
+        {
+            Values values = new Values();
+            Block block = null;
+            BitSet pathIds = new BitSet();
+            long offset = reader.getPosition();
+            while ( reader.read( values ) )
+            {
+                if ( block == null )
+                {
+                    block = new Block();
+                    block.offset = offset;
+                    block.minTimestamp = Long.MAX_VALUE;
+                    block.maxTimestamp = Long.MIN_VALUE;
+                }
+                block.records++;
+                block.minTimestamp = Math.min( block.minTimestamp, values.getEventTimestamp() );
+                block.maxTimestamp = Math.max( block.maxTimestamp, values.getEventTimestamp() );
+                pathIds.set( values.getPathId() );
+                if ( block.records == interval )
+                {
+                    index.addBlock( block, pathIds );
+                    block = null;
+                }
+                offset = reader.getPosition();
+            }
+            if ( block != null )
+            {
+                index.addBlock( block, pathIds );
+            }
+        }
+        for ( int i = 0; i < dictionary.getMethodCount(); i++ )
+        {
+            index.methods.add( dictionary.getMethod( i ) );
+        }
+        for ( int i = 0; i < dictionary.getPathCount(); i++ )
+        {
+            index.paths.add( dictionary.getPath( i ) );
+        }
+        return index;
+    }
+
+    private void addBlock( Block block, BitSet pathIds )
+    {
+        block.pathIds = pathIds.stream().toArray();
+        pathIds.clear();
+        blocks.add( block );
+    }
+
+    /**
+     * @return a dictionary with the ids used in the file
+     */
+    public ValuesDictionary newDictionary()
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        methods.forEach( dictionary::methodId );
+        paths.forEach( dictionary::pathId );
+        return dictionary;
+    }
+
+    public ValuesFormat getFormat()
+    {
+        return format;
+    }
+
+    public void setFormat( ValuesFormat format )
+    {
+        this.format = format;
+    }
+
+    public boolean isCompressed()
+    {
+        return compressed;
+    }
+
+    public void setCompressed( boolean compressed )
+    {
+        this.compressed = compressed;
+    }
+
+    public long getFileSize()
+    {
+        return fileSize;
+    }
+
+    public void setFileSize( long fileSize )
+    {
+        this.fileSize = fileSize;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    public void setLastModified( long lastModified )
+    {
+        this.lastModified = lastModified;
+    }
+
+    public List<String> getMethods()
+    {
+        return methods;
+    }
+
+    public void setMethods( List<String> methods )
+    {
+        this.methods = methods;
+    }
+
+    public List<String> getPaths()
+    {
+        return paths;
+    }
+
+    public void setPaths( List<String> paths )
+    {
+        this.paths = paths;
+    }
+
+    public List<Block> getBlocks()
+    {
+        return blocks;
+    }
+
+    public void setBlocks( List<Block> blocks )
+    {
+        this.blocks = blocks;
+    }
+
+    public static class Block
+        implements Serializable
+    {
+        private long offset;
+
+        private int records;
+
+        private long minTimestamp;
+
+        private long maxTimestamp;
+
+        /**
+         * sorted ids of the paths of the block
+         */
+        private int[] pathIds;
+
+        /**
+         * @return <code>true</code> if the block may contain samples in [start, end)
+         */
+        public boolean overlaps( long start, long end )
+        {
+            return minTimestamp < end && maxTimestamp >= start;
+        }
+
+        /**
+         * @return <code>true</code> if the block contains samples of the path
+         */
+        public boolean containsPath( int pathId )
+        {
+            return Arrays.binarySearch( pathIds, pathId ) >= 0;
+        }
+
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        public void setOffset( long offset )
+        {
+            this.offset = offset;
+        }
+
+        public int getRecords()
+        {
+            return records;
+        }
+
+        public void setRecords( int records )
+        {
+            this.records = records;
+        }
+
+        public long getMinTimestamp()
+        {
+            return minTimestamp;
+        }
+
+        public void setMinTimestamp( long minTimestamp )
+        {
+            this.minTimestamp = minTimestamp;
+        }
+
+        public long getMaxTimestamp()
+        {
+            return maxTimestamp;
+        }
+
+        public void setMaxTimestamp( long maxTimestamp )
+        {
+            this.maxTimestamp = maxTimestamp;
+        }
+
+        public int[] getPathIds()
+        {
+            return pathIds;
+        }
+
+        public void setPathIds( int[] pathIds )
+        {
+            this.pathIds = pathIds;
+        }
+    }
+}
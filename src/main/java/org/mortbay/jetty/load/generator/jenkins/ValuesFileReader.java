@@ -0,0 +1,309 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Random access to a samples file written by {@link ValuesFileWriter} in {@link ValuesFormat#TEXT} or
+ * {@link ValuesFormat#BINARY}, using its {@link ValuesFileIndex} (built on first use) to only read the blocks
+ * matching a time range or a path. Uncompressed files are read from the block offsets, compressed files
+ * still have to be decompressed up to the first block but are not parsed before it.
+ * <p>
+ * A file rolled by {@link RollingValuesRecordWriter} is read segment by segment, in order, skipping the
+ * segments out of the time range according to the {@link ValuesSegmentIndex}. Each segment has its own index
+ * and dictionary so the visited values must be matched on their path rather than their path id.
+ */
+public class ValuesFileReader
+{
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+
+    private final ValuesFileIndex index;
+
+    private final ValuesDictionary dictionary;
+
+    /**
+     * segments of a rolled file, empty otherwise
+     */
+    private final List<ValuesSegmentIndex.Segment> segments;
+
+    /**
+     * readers of the segments opened so far, by segment position
+     */
+    private final Map<Integer, ValuesFileReader> segmentReaders = new HashMap<>();
+
+    public ValuesFileReader( Path path, ValuesFileIndex index )
+    {
+        this.path = path;
+        this.index = index;
+        this.dictionary = index.newDictionary();
+        this.segments = Collections.emptyList();
+    }
+
+    private ValuesFileReader( Path path, List<ValuesSegmentIndex.Segment> segments )
+    {
+        this.path = path;
+        this.index = null;
+        this.dictionary = null;
+        this.segments = segments;
+    }
+
+    /**
+     * @return a reader of the samples file using its index, built if missing or outdated, or a reader of its
+     * segments if the file has been rolled
+     */
+    public static ValuesFileReader open( Path path )
+        throws IOException
+    {
+        if ( !Files.exists( path ) )
+        {
+            List<ValuesSegmentIndex.Segment> segments = ValuesSegmentIndex.read( path );
+            if ( !segments.isEmpty() )
+            {
+                return new ValuesFileReader( path, segments );
+            }
+        }
+        return new ValuesFileReader( path, ValuesFileIndex.load( path ) );
+    }
+
+    /**
+     * visits the samples with an event timestamp in [startNanos, endNanos), the values instance is reused
+     */
+    public void range( long startNanos, long endNanos, Consumer<Values> consumer )
+        throws IOException
+    {
+        if ( !segments.isEmpty() )
+        {
+            for ( ValuesFileReader segmentReader : segmentReaders( startNanos, endNanos ) )
+            {
+                segmentReader.range( startNanos, endNanos, consumer );
+            }
+            return;
+        }
+        visit( -1, startNanos, endNanos, consumer );
+    }
+
+    /**
+     * visits the samples of the path, the values instance is reused
+     */
+    public void path( String path, Consumer<Values> consumer )
+        throws IOException
+    {
+        range( path, Long.MIN_VALUE, Long.MAX_VALUE, consumer );
+    }
+
+    /**
+     * visits the samples of the path with an event timestamp in [startNanos, endNanos),
+     * the values instance is reused
+     */
+    public void range( String path, long startNanos, long endNanos, Consumer<Values> consumer )
+        throws IOException
+    {
+        if ( !segments.isEmpty() )
+        {
+            for ( ValuesFileReader segmentReader : segmentReaders( startNanos, endNanos ) )
+            {
+                segmentReader.range( path, startNanos, endNanos, consumer );
+            }
+            return;
+        }
+        int pathId = dictionary.findPathId( path );
+        if ( pathId >= 0 )
+        {
+            visit( pathId, startNanos, endNanos, consumer );
+        }
+    }
+
+    /**
+     * @return the readers of the segments with samples in [startNanos, endNanos), opened on first use
+     */
+    private List<ValuesFileReader> segmentReaders( long startNanos, long endNanos )
+        throws IOException
+    {
+        List<ValuesFileReader> readers = new ArrayList<>();
+        for ( int i = 0; i < segments.size(); i++ )
+        {
+            ValuesSegmentIndex.Segment segment = segments.get( i );
+            if ( segment.getLastTimestamp() < startNanos || segment.getFirstTimestamp() >= endNanos )
+            {
+                continue;
+            }
+            ValuesFileReader reader = segmentReaders.get( i );
+            if ( reader == null )
+            {
+                reader = open( segment.getPath( path ) );
+                segmentReaders.put( i, reader );
+            }
+            readers.add( reader );
+        }
+        return readers;
+    }
+
+    private void visit( int pathId, long startNanos, long endNanos, Consumer<Values> consumer )
+        throws IOException
+    {
+        List<ValuesFileIndex.Block> blocks = index.getBlocks();
+        Values values = new Values();
+        ValuesRecordReader reader = null;
+        try
+        {
+            for ( ValuesFileIndex.Block block : blocks )
+            {
+                if ( !block.overlaps( startNanos, endNanos ) || ( pathId >= 0 && !block.containsPath( pathId ) ) )
+                {
+                    continue;
+                }
+                // consecutive blocks are read without seeking
+                if ( reader == null || reader.getPosition() != block.getOffset() )
+                {
+                    if ( reader != null )
+                    {
+                        reader.close();
+                    }
+                    reader = newRecordReader( block.getOffset() );
+                }
+                for ( int i = 0; i < block.getRecords() && reader.read( values ); i++ )
+                {
+                    if ( ( pathId < 0 || values.getPathId() == pathId ) //
+                        && values.getEventTimestamp() >= startNanos && values.getEventTimestamp() < endNanos )
+                    {
+                        consumer.accept( values );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if ( reader != null )
+            {
+                reader.close();
+            }
+        }
+    }
+
+    private ValuesRecordReader newRecordReader( long offset )
+        throws IOException
+    {
+        InputStream inputStream;
+        if ( index.isCompressed() )
+        {
+            inputStream = ValuesCompression.newInputStream( path );
+            long skipped = 0;
+            while ( skipped < offset )
+            {
+                long n = inputStream.skip( offset - skipped );
+                if ( n <= 0 )
+                {
+                    inputStream.close();
+                    throw new IOException( "offset " + offset + " after the end of " + path );
+                }
+                skipped += n;
+            }
+        }
+        else
+        {
+            FileChannel channel = FileChannel.open( path, StandardOpenOption.READ );
+            channel.position( offset );
+            inputStream = Channels.newInputStream( channel );
+        }
+        return newRecordReader( index.getFormat(), new BufferedInputStream( inputStream, BUFFER_SIZE ), //
+                                dictionary, offset );
+    }
+
+    /**
+     * @return the index of the file, <code>null</code> for a rolled file
+     */
+    public ValuesFileIndex getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * @return the dictionary of the file, <code>null</code> for a rolled file
+     */
+    public ValuesDictionary getDictionary()
+    {
+        return dictionary;
+    }
+
+    /**
+     * @return the segments of a rolled file, empty otherwise
+     */
+    public List<ValuesSegmentIndex.Segment> getSegments()
+    {
+        return segments;
+    }
+
+    /**
+     * @return {@link ValuesFormat#BINARY} if the file starts with the binary header, otherwise
+     * {@link ValuesFormat#TEXT}
+     */
+    public static ValuesFormat detectFormat( Path path )
+        throws IOException
+    {
+        try (InputStream inputStream = ValuesCompression.newInputStream( path ))
+        {
+            int magic = 0;
+            for ( int i = 0; i < 4; i++ )
+            {
+                magic = ( magic << 8 ) | ( inputStream.read() & 0xFF );
+            }
+            return magic == BinaryValuesFormat.MAGIC ? ValuesFormat.BINARY : ValuesFormat.TEXT;
+        }
+    }
+
+    public static ValuesRecordReader newRecordReader( ValuesFormat format, Path path, ValuesDictionary dictionary )
+        throws IOException
+    {
+        return newRecordReader( format, ValuesCompression.newInputStream( path ), dictionary, 0 );
+    }
+
+    /**
+     * @throws IllegalArgumentException for {@link ValuesFormat#MAPPED}, segments have to be read one by one
+     */
+    public static ValuesRecordReader newRecordReader( ValuesFormat format, InputStream inputStream,
+                                                      ValuesDictionary dictionary, long offset )
+        throws IOException
+    {
+        switch ( format )
+        {
+            case BINARY:
+                return new BinaryValuesRecordReader( inputStream, dictionary, offset );
+            case TEXT:
+                return new TextValuesRecordReader( inputStream, dictionary, offset );
+            default:
+                throw new IllegalArgumentException( "cannot read " + format + " as a single file" );
+        }
+    }
+}
@@ -19,140 +19,767 @@ package org.mortbay.jetty.load.generator.jenkins;
 
 import com.lmax.disruptor.EventFactory;
 import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.EventTranslatorTwoArg;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.HdrHistogram.Histogram;
 import org.mortbay.jetty.load.generator.LoadGenerator;
 import org.mortbay.jetty.load.generator.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  *
  */
 public class ValuesFileWriter
-    implements Resource.NodeListener, Serializable, EventHandler<Values>, EventFactory<Values>,
+    implements Resource.NodeListener, Serializable, EventFactory<Values>, LoadGenerator.BeginListener,
     LoadGenerator.EndListener
 {
 
+    /**
+     * size of the ring buffer, must be a power of 2
+     */
+    public static final String RING_BUFFER_SIZE_PROPERTY = "loadgenerator.ringbuffer.size";
+
+    /**
+     * see {@link ValuesWaitStrategy}, default blocking
+     */
+    public static final String WAIT_STRATEGY_PROPERTY = "loadgenerator.ringbuffer.waitStrategy";
+
+    /**
+     * <code>multi</code> (default) or <code>single</code>, single is only safe if the load generator
+     * publishes from one thread
+     */
+    public static final String PRODUCER_TYPE_PROPERTY = "loadgenerator.ringbuffer.producerType";
+
+    /**
+     * see {@link ValuesBackPressure}, default block
+     */
+    public static final String BACK_PRESSURE_PROPERTY = "loadgenerator.ringbuffer.backPressure";
+
+    /**
+     * capacity of the overflow queue used by {@link ValuesBackPressure#SPILL}
+     */
+    public static final String OVERFLOW_SIZE_PROPERTY = "loadgenerator.ringbuffer.overflow.size";
+
+    /**
+     * maximum time in seconds to wait at the end of a run for the consumers to process the published samples
+     */
+    public static final String DRAIN_TIMEOUT_PROPERTY = "loadgenerator.ringbuffer.drainTimeout";
+
+    /**
+     * number of ring buffers (default 1), each with its own consumer thread and output file, a producer thread
+     * always publishes to the same shard. The shard files are merged in request time order when the run ends.
+     */
+    public static final String SHARDS_PROPERTY = "loadgenerator.ringbuffer.shards";
+
+    /**
+     * if <code>true</code> the samples are also stored as {@link ColumnarValues} when the run ends
+     */
+    public static final String COLUMNAR_PROPERTY = "loadgenerator.values.columnar";
+
+    /**
+     * if <code>true</code> the samples of the warmup phase are part of the histograms and status counts,
+     * by default they are only written, tagged, to the samples file
+     */
+    public static final String WARMUP_INCLUDE_PROPERTY = "loadgenerator.values.warmup.include";
+
+    /**
+     * value of {@link #measurementStart} when the run has no warmup phase
+     */
+    private static final long NO_WARMUP = Long.MIN_VALUE;
+
+    /**
+     * value of {@link #measurementStart} during a warmup phase ended by {@link #startMeasurement()}
+     */
+    private static final long UNTIL_MEASUREMENT = Long.MAX_VALUE;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( ValuesFileWriter.class );
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * consumer threads must not keep the agent alive
+     */
+    private static final ThreadFactory THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread( runnable, "loadgenerator-values-" + THREAD_COUNTER.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+    };
+
+    /**
+     * copies the fields of the {@link Resource.Info} into the preallocated ring slot, as it doesn't capture
+     * anything publishing doesn't allocate
+     */
+    private static final EventTranslatorTwoArg<Values, Resource.Info, ValuesFileWriter> INFO_TRANSLATOR =
+        ( event, sequence, info, writer ) -> event //
+            .eventTimestamp( info.getRequestTime() ) //
+            .methodId( writer.dictionary.methodId( info.getResource().getMethod() ) ) //
+            .pathId( writer.dictionary.pathId( info.getResource().getPath() ) ) //
+            .status( info.getStatus() ) //
+            .size( 0 ) //
+            .latencyTime( info.getLatencyTime() ) //
+            .responseTime( info.getResponseTime() ) //
+            .warmup( writer.isWarmup( info.getRequestTime() ) ) //
+            .iteration( writer.iteration );
+
+    private static final EventTranslatorTwoArg<Values, Values, ValuesFileWriter> VALUES_TRANSLATOR =
+        ( event, sequence, values, writer ) -> event //
+            .eventTimestamp( values.getEventTimestamp() ) //
+            .methodId( writer.dictionary.methodId( values.getMethod() ) ) //
+            .pathId( writer.dictionary.pathId( values.getPath() ) ) //
+            .status( values.getStatus() ) //
+            .size( values.getSize() ) //
+            .latencyTime( values.getLatencyTime() ) //
+            .responseTime( values.getResponseTime() ) //
+            .warmup( values.isWarmup() || writer.isWarmup( values.getEventTimestamp() ) ) //
+            .iteration( writer.iteration );
+
+    private static final EventTranslatorOneArg<Values, Values> COPY_TRANSLATOR = ( event, sequence, values ) -> event //
+        .eventTimestamp( values.getEventTimestamp() ) //
+        .methodId( values.getMethodId() ) //
+        .pathId( values.getPathId() ) //
+        .status( values.getStatus() ) //
+        .size( values.getSize() ) //
+        .latencyTime( values.getLatencyTime() ) //
+        .responseTime( values.getResponseTime() ) //
+        .warmup( values.isWarmup() ) //
+        .iteration( values.getIteration() );
+
     private final String filePath;
 
-    private transient BufferedWriter bufferedWriter;
+    private final ValuesFormat format;
+
+    private final ValuesCompression compression;
+
+    private transient ValuesDictionary dictionary;
+
+    private transient ValuesRecordWriter recordWriter;
+
+    private transient ValuesHistograms histograms;
+
+    private transient ValuesStatusCounters statusCounters;
+
+    private transient ValuesLiveMetrics liveMetrics;
+
+    private String liveId;
+
+    /**
+     * serialized with the writer, a remoting proxy when the writer runs on an agent
+     */
+    private ValuesLiveMetrics.Sink liveSink;
+
+    private ValuesSloEvaluator sloEvaluator;
+
+    private transient volatile LoadGenerator generator;
+
+    /**
+     * resources (not resource trees) per second intended by the configuration, as counted by the live metrics
+     */
+    private transient volatile long expectedQps;
+
+    private transient volatile String abortReason;
 
-    private transient RingBuffer<Values> ringBuffer;
+    /**
+     * nano time of the first request of the measured phase, the samples of earlier requests are tagged as warmup
+     */
+    private transient volatile long measurementStart = NO_WARMUP;
+
+    private transient boolean includeWarmup;
+
+    /**
+     * index of the current iteration of the run, each iteration has its own files
+     */
+    private transient volatile int iteration;
+
+    private transient Shard[] shards;
+
+    private transient ValuesBackPressure backPressure;
+
+    private transient ValuesSampling sampling;
+
+    private transient LongAdder published, dropped, spilled, blockedTime;
+
+    private transient AtomicLong maxBacklog;
+
+    private transient volatile long written, lost;
+
+    /**
+     * <code>false</code> once the run has ended, the samples published later are ignored
+     */
+    private transient volatile boolean started;
 
     public ValuesFileWriter( Path path )
     {
-        try
+        this( path, ValuesFormat.TEXT );
+    }
+
+    public ValuesFileWriter( Path path, ValuesFormat format )
+    {
+        this( path, format, ValuesCompression.NONE );
+    }
+
+    /**
+     * nothing is opened until {@link #readResolve()} which starts the recording
+     */
+    public ValuesFileWriter( Path path, ValuesFormat format, ValuesCompression compression )
+    {
+        this.filePath = path.toAbsolutePath().toString();
+        this.format = format == null ? ValuesFormat.TEXT : format;
+        this.compression = compression == null ? ValuesCompression.NONE : compression;
+    }
+
+    /**
+     * Takes the intended request rate of the run to correct the histograms for coordinated omission:
+     * each load generator thread is expected to send a resource every <code>threads / resourceRate</code>
+     * seconds.
+     * The warmup iterations of each thread take as many intervals, the measured phase starts after them.
+     * Without a resource rate the warmup lasts until {@link #startMeasurement()}.
+     */
+    @Override
+    public void onBegin( LoadGenerator generator )
+    {
+        this.generator = generator;
+        LoadGenerator.Config config = generator.getConfig();
+        int resourceRate = config.getResourceRate();
+        this.expectedQps = (long) resourceRate * requestedResources( config.getResource() );
+        long expectedInterval = resourceRate > 0 ? TimeUnit.SECONDS.toNanos( config.getThreads() ) / resourceRate : 0;
+        this.histograms.setExpectedInterval( expectedInterval );
+        int warmupIterations = config.getWarmupIterationsPerThread();
+        if ( warmupIterations > 0 )
         {
-            this.filePath = path.toAbsolutePath().toString();
-            this.bufferedWriter = Files.newBufferedWriter( path );
+            if ( expectedInterval > 0 )
+            {
+                this.measurementStart = System.nanoTime() + warmupIterations * expectedInterval;
+            }
+            else
+            {
+                startWarmup();
+            }
         }
-        catch ( IOException e )
+    }
+
+    /**
+     * Starts a warmup phase lasting until {@link #startMeasurement()}.
+     */
+    public void startWarmup()
+    {
+        this.measurementStart = UNTIL_MEASUREMENT;
+    }
+
+    /**
+     * Ends the warmup phase now: the samples of the requests sent from now on are measured.
+     * Required when the load generator has no resource rate as the end of its warmup can't be computed.
+     */
+    public void startMeasurement()
+    {
+        this.measurementStart = System.nanoTime();
+    }
+
+    /**
+     * @param timestamp nano time of the request
+     * @return <code>true</code> if the request has been sent before the measured phase
+     */
+    public boolean isWarmup( long timestamp )
+    {
+        long measurementStart = this.measurementStart;
+        if ( measurementStart == NO_WARMUP || measurementStart == UNTIL_MEASUREMENT )
         {
-            throw new RuntimeException( e.getMessage(), e );
+            return measurementStart == UNTIL_MEASUREMENT;
         }
+        return timestamp - measurementStart < 0;
+    }
 
+    /**
+     * @return the number of requests sent for each resource tree, the resources without path only group others
+     */
+    static int requestedResources( Resource resource )
+    {
+        if ( resource == null )
+        {
+            return 0;
+        }
+        int count = resource.getPath() == null ? 0 : 1;
+        for ( Resource child : resource.getResources() )
+        {
+            count += requestedResources( child );
+        }
+        return count;
+    }
+
+    /**
+     * interrupts the load generator the first time the {@link ValuesSloEvaluator} reports a breach,
+     * the windows of the warmup phase are not evaluated
+     */
+    private void evaluateSlo( ValuesLiveMetrics.Window window )
+    {
+        ValuesSloEvaluator sloEvaluator = this.sloEvaluator;
+        if ( sloEvaluator == null || this.abortReason != null || isWarmup( System.nanoTime() ) )
+        {
+            return;
+        }
+        String reason = sloEvaluator.evaluate( window, this.expectedQps );
+        if ( reason != null )
+        {
+            this.abortReason = reason;
+            LOGGER.warn( "abort load generator: {}", reason );
+            LoadGenerator generator = this.generator;
+            if ( generator != null )
+            {
+                generator.interrupt();
+            }
+        }
     }
 
+    /**
+     * only the dictionary ids of the method and path go through the ring buffer
+     */
     protected void onValues( Values values )
     {
-        this.ringBuffer.publishEvent( ( event, sequence ) -> //
-                event.eventTimestamp( values.getEventTimestamp() ) //
-                    .method( values.getMethod() ) //
-                    .path( values.getPath() ) //
-                    .responseTime( values.getResponseTime() ) //
-                    .status( values.getStatus() ) //
-                    .latencyTime( values.getLatencyTime() ) //
-                    .size( values.getSize() ) );
+        publish( VALUES_TRANSLATOR, values );
     }
 
     @Override
     public void onResourceNode( Resource.Info info )
     {
-        onValues( new Values() //
-                      .eventTimestamp( info.getRequestTime() ) //
-                      .method( info.getResource().getMethod() ) //
-                      .path( info.getResource().getPath() ) //
-                      .status( info.getStatus() ) //
-                      .latencyTime( info.getLatencyTime() ) //
-                      .responseTime( info.getResponseTime() ) );
+        publish( INFO_TRANSLATOR, info );
+    }
+
+    /**
+     * publish without allocating as long as the ring buffer has room, otherwise apply the back pressure policy
+     */
+    private <A> void publish( EventTranslatorTwoArg<Values, A, ValuesFileWriter> translator, A source )
+    {
+        if ( !this.started )
+        {
+            return;
+        }
+        Shard shard = shard();
+        RingBuffer<Values> ringBuffer = shard.ringBuffer;
+        if ( shard.overflow != null && !shard.overflow.isEmpty() )
+        {
+            synchronized ( shard.overflow )
+            {
+                // the sample goes after the spilled ones, behind them in the overflow if they are not all published
+                shard.drainOverflow( System.nanoTime() );
+                if ( !shard.overflow.isEmpty() )
+                {
+                    spill( shard, translator, source );
+                    return;
+                }
+            }
+        }
+        if ( !ringBuffer.tryPublishEvent( translator, source, this ) )
+        {
+            switch ( this.backPressure )
+            {
+                case DROP:
+                    this.dropped.increment();
+                    return;
+                case SPILL:
+                    spill( shard, translator, source );
+                    return;
+                default:
+                    // as RingBuffer.publishEvent but gives up if the run ends, its consumer would never free a slot
+                    long start = System.nanoTime();
+                    while ( !ringBuffer.tryPublishEvent( translator, source, this ) )
+                    {
+                        if ( !this.started )
+                        {
+                            return;
+                        }
+                        LockSupport.parkNanos( 1 );
+                    }
+                    this.blockedTime.add( System.nanoTime() - start );
+            }
+        }
+        this.published.increment();
+        long backlog = ringBuffer.getBufferSize() - ringBuffer.remainingCapacity();
+        if ( backlog > this.maxBacklog.get() )
+        {
+            this.maxBacklog.accumulateAndGet( backlog, Math::max );
+        }
+    }
+
+    private <A> void spill( Shard shard, EventTranslatorTwoArg<Values, A, ValuesFileWriter> translator, A source )
+    {
+        Values copy = new Values();
+        translator.translateTo( copy, -1, source, this );
+        if ( shard.overflow.offer( copy ) )
+        {
+            this.spilled.increment();
+        }
+        else
+        {
+            this.dropped.increment();
+        }
+    }
+
+    /**
+     * @return the shard of the current producer thread
+     */
+    private Shard shard()
+    {
+        Shard[] shards = this.shards;
+        return shards.length == 1 ? shards[0] : shards[(int) ( Thread.currentThread().getId() % shards.length )];
     }
 
     public Object readResolve()
+    {
+        this.dictionary = new ValuesDictionary();
+        this.histograms = new ValuesHistograms( this.dictionary );
+        this.statusCounters = new ValuesStatusCounters( this.dictionary );
+        this.liveMetrics = new ValuesLiveMetrics( this.dictionary );
+        this.liveMetrics.addListener( this::evaluateSlo );
+        this.liveMetrics.setSink( this.liveSink );
+        this.published = new LongAdder();
+        this.dropped = new LongAdder();
+        this.spilled = new LongAdder();
+        this.blockedTime = new LongAdder();
+        this.maxBacklog = new AtomicLong();
+        start();
+        return this;
+    }
+
+    /**
+     * opens the outputs and starts the ring buffers and their consumer threads
+     */
+    private synchronized void start()
     {
         try
         {
-            this.bufferedWriter = Files.newBufferedWriter( Paths.get( this.filePath ) );
+            if ( this.iteration == 0 )
+            {
+                // summaries of the iterations of a previous run written to the same path
+                Files.deleteIfExists( getIterationsPath() );
+            }
+            this.histograms.open( getHistogramLogPath() );
+            this.statusCounters.open();
+            this.liveMetrics.open( getLiveId() );
+            this.abortReason = null;
+            this.measurementStart = NO_WARMUP;
+            this.includeWarmup = Boolean.getBoolean( WARMUP_INCLUDE_PROPERTY );
+            this.histograms.setIncludeWarmup( this.includeWarmup );
+            this.statusCounters.setIncludeWarmup( this.includeWarmup );
+            this.liveMetrics.setIncludeWarmup( this.includeWarmup );
+            if ( this.sloEvaluator != null )
+            {
+                this.sloEvaluator.reset();
+            }
 
-            // Executor that will be used to construct new threads for consumers
-            ExecutorService executor = Executors.newCachedThreadPool();
+            this.backPressure = ValuesBackPressure.of( System.getProperty( BACK_PRESSURE_PROPERTY ) );
+            this.sampling = ValuesSampling.of( System.getProperty( ValuesSampling.SAMPLING_PROPERTY ) );
+            this.published.reset();
+            this.dropped.reset();
+            this.spilled.reset();
+            this.blockedTime.reset();
+            this.maxBacklog.set( 0 );
+            this.written = 0;
+            this.lost = 0;
 
             // Specify the size of the ring buffer, must be power of 2.
-            int bufferSize = Integer.getInteger( "loadgenerator.ringbuffer.size", 2048 );
+            int bufferSize = Integer.getInteger( RING_BUFFER_SIZE_PROPERTY, 2048 );
 
-            // Construct the Disruptor
-            Disruptor<Values> disruptor = new Disruptor<>( this, bufferSize, executor );
-
-            // Connect the handler
-            disruptor.handleEventsWith( this );
-
-            // Start the Disruptor, starts all threads running
-            disruptor.start();
+            ProducerType producerType = ProducerType.valueOf( //
+                System.getProperty( PRODUCER_TYPE_PROPERTY, ProducerType.MULTI.name() ).toUpperCase( Locale.ENGLISH ) );
 
-            this.ringBuffer = disruptor.getRingBuffer();
+            ValuesWaitStrategy waitStrategy = ValuesWaitStrategy.of( System.getProperty( WAIT_STRATEGY_PROPERTY ) );
 
+            Shard[] shards = new Shard[Math.max( 1, Integer.getInteger( SHARDS_PROPERTY, 1 ) )];
+            for ( int i = 0; i < shards.length; i++ )
+            {
+                // a single ring writes the final output directly, shards write binary files merged at the end
+                ValuesRecordWriter recordWriter = shards.length == 1 //
+                    ? newRecordWriter() //
+                    : new BinaryValuesRecordWriter( Files.newOutputStream( shardPath( i ) ), this.dictionary );
+                shards[i] = new Shard( recordWriter, bufferSize, producerType, waitStrategy );
+            }
+            this.shards = shards;
+            this.started = true;
         }
         catch ( Exception e )
         {
             throw new RuntimeException( e.getMessage(), e );
         }
-        return this;
     }
 
-    @Override
-    public void onEvent( Values values, long l, boolean b )
-        throws Exception
+    private Path shardPath( int index )
     {
-        try
-        {
-            StringBuilder sb = new StringBuilder( 128 ) //
-                .append( values.getEventTimestamp() ).append( '|' ) //
-                .append( values.getMethod() ).append( '|' ) //
-                .append( values.getPath() ).append( '|' ) //
-                .append( values.getStatus() ).append( '|' ) //
-                .append( values.getSize() ).append( '|' ) //
-                .append( values.getResponseTime() ).append( '|' ) //
-                .append( values.getLatencyTime() );
+        return Paths.get( samplesFile() + ".shard-" + index );
+    }
+
+    /**
+     * ends the current run and starts a new one writing to the same files
+     */
+    public void reset()
+    {
+        this.onEnd( null );
+        start();
+    }
 
-            this.bufferedWriter.write( sb.toString() );
-            this.bufferedWriter.newLine();
+    /**
+     * Ends the current iteration and starts the next one: its samples, histograms and status counts are
+     * written to their own files, see {@link #getSamplesPath()}, and its summary is added to the
+     * {@link ValuesIterations} of the run. No op once the run has ended.
+     */
+    public synchronized void nextIteration()
+    {
+        if ( !this.started )
+        {
+            return;
         }
-        catch ( IOException e )
+        this.onEnd( null );
+        this.iteration++;
+        start();
+    }
+
+    public int getIteration()
+    {
+        return iteration;
+    }
+
+    /**
+     * @return the samples file of the current iteration, the first iteration uses the path of the writer
+     * and the next ones add an <code>.iteration-N</code> suffix, followed by the suffix of the compression
+     * (<code>.gz</code>)
+     */
+    public Path getSamplesPath()
+    {
+        return this.compression.withSuffix( Paths.get( samplesFile() ) );
+    }
+
+    private String samplesFile()
+    {
+        return iteration == 0 ? filePath : filePath + ".iteration-" + iteration;
+    }
+
+    /**
+     * @return path of the {@link ValuesIterations} json updated at the end of each iteration
+     */
+    public Path getIterationsPath()
+    {
+        return Paths.get( this.filePath + ".iterations.json" );
+    }
+
+    private ValuesRecordWriter newRecordWriter()
+        throws IOException
+    {
+        long rotationSize = Long.getLong( RollingValuesRecordWriter.SIZE_PROPERTY, 0 );
+        long rotationWindow = TimeUnit.SECONDS.toMillis( Long.getLong( RollingValuesRecordWriter.WINDOW_PROPERTY, 0 ) );
+        if ( rotationSize > 0 || rotationWindow > 0 )
         {
-            e.printStackTrace();
+            return new RollingValuesRecordWriter( getSamplesPath(), //
+                                                  segment -> this.format.newRecordWriter( segment, this.dictionary,
+                                                                                          this.compression ), //
+                                                  rotationSize, rotationWindow );
         }
+        return this.format.newRecordWriter( getSamplesPath(), this.dictionary, this.compression );
     }
 
+    public ValuesFormat getFormat()
+    {
+        return format;
+    }
 
-    public void reset()
+    public ValuesCompression getCompression()
     {
-        try
+        return compression;
+    }
+
+    public ValuesDictionary getDictionary()
+    {
+        return dictionary;
+    }
+
+    public ValuesHistograms getHistograms()
+    {
+        return histograms;
+    }
+
+    /**
+     * @param liveId id of the {@link ValuesLiveMetrics} of the runs, to be set before {@link #readResolve()}
+     */
+    public ValuesFileWriter liveId( String liveId )
+    {
+        this.liveId = liveId;
+        return this;
+    }
+
+    /**
+     * @param liveSink receives the {@link ValuesLiveMetrics} windows of the runs, to be set before
+     * {@link #readResolve()}, see {@link LiveMetricsAction#attach}
+     */
+    public ValuesFileWriter liveSink( ValuesLiveMetrics.Sink liveSink )
+    {
+        this.liveSink = liveSink;
+        return this;
+    }
+
+    /**
+     * @return id of the {@link ValuesLiveMetrics} of the run, the samples file path by default
+     */
+    public String getLiveId()
+    {
+        return liveId == null ? filePath : liveId;
+    }
+
+    /**
+     * @param sloEvaluator checks the live metrics every second and aborts the run on breach, to be set before
+     * {@link #readResolve()}. The expected qps given to the evaluator is the resource rate of the load generator.
+     */
+    public ValuesFileWriter sloEvaluator( ValuesSloEvaluator sloEvaluator )
+    {
+        this.sloEvaluator = sloEvaluator;
+        return this;
+    }
+
+    /**
+     * @return why the run has been aborted, <code>null</code> if it has not
+     */
+    public String getAbortReason()
+    {
+        return abortReason;
+    }
+
+    public ValuesLiveMetrics getLiveMetrics()
+    {
+        return liveMetrics;
+    }
+
+    public ValuesStatusCounters getStatusCounters()
+    {
+        return statusCounters;
+    }
+
+    /**
+     * @return the back pressure counters of the run so far, <code>null</code> if the ring buffer is not started.
+     * The recorded samples and status counts are only complete once the run has ended.
+     */
+    public ValuesRecordingStats getRecordingStats()
+    {
+        if ( this.published == null )
         {
-            this.onEnd( null );
-            this.bufferedWriter = Files.newBufferedWriter( Paths.get( this.filePath ) );
+            return null;
         }
-        catch ( IOException e )
+        long recorded = 0, warmup = 0;
+        long[] statusCounts = new long[Shard.STATUS_COUNT];
+        for ( Shard shard : this.shards )
         {
-            e.printStackTrace();
-            throw new RuntimeException( e.getMessage(), e );
+            recorded += shard.sampler.getRecorded();
+            warmup += shard.warmup;
+            for ( int i = 0; i < statusCounts.length; i++ )
+            {
+                statusCounts[i] += shard.statusCounts[i];
+            }
+        }
+        Map<Integer, Long> statuses = new TreeMap<>();
+        for ( int i = 0; i < statusCounts.length; i++ )
+        {
+            if ( statusCounts[i] > 0 )
+            {
+                statuses.put( i, statusCounts[i] );
+            }
+        }
+        return new ValuesRecordingStats() //
+            .backPressure( this.backPressure ) //
+            .shards( this.shards.length ) //
+            .sampling( this.sampling ) //
+            .recorded( recorded ) //
+            .warmup( warmup ) //
+            .warmupIncluded( this.includeWarmup ) //
+            .statuses( statuses ) //
+            .published( this.published.sum() ) //
+            .dropped( this.dropped.sum() ) //
+            .spilled( this.spilled.sum() ) //
+            .maxBacklog( this.maxBacklog.get() ) //
+            .blockedTime( this.blockedTime.sum() ) //
+            .written( this.written ) //
+            .lost( this.lost ) //
+            .expectedInterval( this.histograms.getExpectedInterval() ) //
+            .percentiles( percentiles() ) //
+            .abortReason( this.abortReason );
+    }
+
+    /**
+     * @return the main percentiles in nano seconds of the raw and corrected histograms, up to the last interval
+     */
+    private Map<String, Map<String, Long>> percentiles()
+    {
+        Map<String, Map<String, Long>> percentiles = new LinkedHashMap<>();
+        ValuesHistograms histograms = this.histograms;
+        percentiles.put( "response", percentiles( histograms.getResponseHistogram( null ) ) );
+        percentiles.put( "latency", percentiles( histograms.getLatencyHistogram( null ) ) );
+        if ( histograms.getExpectedInterval() > 0 )
+        {
+            percentiles.put( "corrected-response", percentiles( histograms.getCorrectedResponseHistogram( null ) ) );
+            percentiles.put( "corrected-latency", percentiles( histograms.getCorrectedLatencyHistogram( null ) ) );
         }
+        return percentiles;
+    }
+
+    private static Map<String, Long> percentiles( Histogram histogram )
+    {
+        Map<String, Long> percentiles = new LinkedHashMap<>();
+        percentiles.put( "p50", histogram.getValueAtPercentile( 50 ) );
+        percentiles.put( "p90", histogram.getValueAtPercentile( 90 ) );
+        percentiles.put( "p99", histogram.getValueAtPercentile( 99 ) );
+        percentiles.put( "p99.9", histogram.getValueAtPercentile( 99.9 ) );
+        percentiles.put( "max", histogram.getMaxValue() );
+        return percentiles;
+    }
+
+    /**
+     * @return path of the {@link ValuesRecordingStats} json written next to the samples file when the run ends
+     */
+    public Path getRecordingStatsPath()
+    {
+        return Paths.get( samplesFile() + ".stats.json" );
+    }
+
+    /**
+     * @return directory of the {@link ColumnarValues} written when the run ends if {@link #COLUMNAR_PROPERTY} is set
+     */
+    public Path getColumnsPath()
+    {
+        return Paths.get( samplesFile() + ".columns" );
+    }
+
+    /**
+     * @return path of the {@link ValuesStatusSummary} json written next to the samples file when the run ends
+     */
+    public Path getStatusSummaryPath()
+    {
+        return Paths.get( samplesFile() + ".status.json" );
+    }
+
+    /**
+     * @return path of the HdrHistogram log written next to the samples file
+     */
+    public Path getHistogramLogPath()
+    {
+        return Paths.get( samplesFile() + ".hlog" );
     }
 
     @Override
@@ -162,19 +789,215 @@ public class ValuesFileWriter
     }
 
 
+    /**
+     * Waits for the consumers to process all published samples (up to {@link #DRAIN_TIMEOUT_PROPERTY} seconds),
+     * stops their threads then closes the outputs and writes the {@link ValuesRecordingStats}.
+     * When sharded, the shard files are merged into the samples file.
+     * Samples published after this call are ignored.
+     */
     @Override
-    public void onEnd( LoadGenerator generator )
+    public synchronized void onEnd( LoadGenerator generator )
     {
+        if ( !this.started )
+        {
+            return;
+        }
+        this.started = false;
+        long timeout = Long.getLong( DRAIN_TIMEOUT_PROPERTY, 30 );
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( timeout );
+        long written = 0;
+        for ( Shard shard : this.shards )
+        {
+            if ( !shard.shutdown( Math.max( 0, deadline - System.nanoTime() ) ) )
+            {
+                LOGGER.warn( "samples not drained after {} seconds", timeout );
+            }
+            written += shard.written;
+        }
+        this.written = written;
+        this.lost = this.published.sum() - written;
+
         try
         {
-            this.bufferedWriter.flush();
-            this.bufferedWriter.close();
+            for ( Shard shard : this.shards )
+            {
+                shard.sampler.flush( shard.recordWriter );
+                shard.recordWriter.close();
+            }
+            if ( this.shards.length > 1 )
+            {
+                mergeShards();
+            }
+            if ( Boolean.getBoolean( COLUMNAR_PROPERTY ) )
+            {
+                ColumnarValues.write( ValuesFormat.samplesFiles( getSamplesPath() ), getColumnsPath() );
+            }
+            this.histograms.close();
+            this.liveMetrics.close();
+            this.statusCounters.getSummary().write( getStatusSummaryPath() );
+            ValuesRecordingStats recordingStats = getRecordingStats();
+            recordingStats.write( getRecordingStatsPath() );
+            LOGGER.info( "stop recording {}: {}", samplesFile(), recordingStats );
+            ValuesIterations.read( getIterationsPath() ) //
+                .put( new ValuesIterations.Iteration( this.iteration, recordingStats ) ) //
+                .write( getIterationsPath() );
         }
         catch ( IOException e )
         {
             throw new RuntimeException( e.getMessage(), e );
         }
-        System.out.println( "stop loadGenerator" );
+    }
+
+    private void mergeShards()
+        throws IOException
+    {
+        List<Path> shardPaths = new ArrayList<>( this.shards.length );
+        for ( int i = 0; i < this.shards.length; i++ )
+        {
+            shardPaths.add( shardPath( i ) );
+        }
+        try (ValuesRecordWriter recordWriter = newRecordWriter())
+        {
+            ValuesMerger.merge( shardPaths, this.dictionary, recordWriter );
+        }
+        for ( Path shardPath : shardPaths )
+        {
+            Files.delete( shardPath );
+        }
+    }
+
+    /**
+     * A ring buffer with its consumer thread writing to its own output, the histograms, status counters and
+     * live metrics are shared by all shards.
+     */
+    private class Shard
+        implements EventHandler<Values>
+    {
+        private final ValuesRecordWriter recordWriter;
+
+        private final Disruptor<Values> disruptor;
+
+        private final RingBuffer<Values> ringBuffer;
+
+        private final BlockingQueue<Values> overflow;
+
+        private final ValuesSampler sampler = sampling.newSampler();
+
+        /**
+         * count of each http status, failures and unknown statuses are counted as 0
+         */
+        static final int STATUS_COUNT = 600;
+
+        private final long[] statusCounts = new long[STATUS_COUNT];
+
+        /**
+         * only written by the consumer thread
+         */
+        private volatile long written, warmup;
+
+        Shard( ValuesRecordWriter recordWriter, int bufferSize, ProducerType producerType,
+               ValuesWaitStrategy waitStrategy )
+        {
+            this.recordWriter = recordWriter;
+            this.overflow = backPressure == ValuesBackPressure.SPILL //
+                ? new ArrayBlockingQueue<>( Integer.getInteger( OVERFLOW_SIZE_PROPERTY, 65536 ) ) //
+                : null;
+
+            // Construct the Disruptor, one named daemon thread per handler
+            this.disruptor = new Disruptor<>( ValuesFileWriter.this, bufferSize, THREAD_FACTORY, producerType, //
+                                              waitStrategy.newWaitStrategy() );
+
+            // Connect the handlers, they consume the events in parallel
+            this.disruptor.handleEventsWith( this, histograms, statusCounters, liveMetrics );
+
+            // Start the Disruptor, starts all threads running
+            this.ringBuffer = this.disruptor.start();
+        }
+
+        @Override
+        public void onEvent( Values values, long sequence, boolean endOfBatch )
+        {
+            if ( values.isWarmup() )
+            {
+                this.warmup++;
+            }
+            if ( !values.isWarmup() || includeWarmup )
+            {
+                int status = values.getStatus();
+                this.statusCounts[status > 0 && status < STATUS_COUNT ? status : 0]++;
+            }
+            this.written++;
+            try
+            {
+                this.sampler.sample( values, this.recordWriter );
+            }
+            catch ( IOException e )
+            {
+                LOGGER.warn( "cannot write sample: " + e.getMessage(), e );
+            }
+        }
+
+        /**
+         * moves the spilled samples to the ring buffer, in order
+         *
+         * @param deadline nano time until when to wait for room in the ring buffer, a past one stops as soon as
+         * the ring buffer is full
+         * @return <code>false</code> if some samples are left in the overflow
+         */
+        boolean drainOverflow( long deadline )
+        {
+            synchronized ( this.overflow )
+            {
+                Values values;
+                while ( ( values = this.overflow.peek() ) != null )
+                {
+                    if ( !this.ringBuffer.tryPublishEvent( COPY_TRANSLATOR, values ) )
+                    {
+                        if ( deadline - System.nanoTime() <= 0 )
+                        {
+                            return false;
+                        }
+                        LockSupport.parkNanos( 1 );
+                        continue;
+                    }
+                    this.overflow.poll();
+                    published.increment();
+                }
+                return true;
+            }
+        }
+
+        /**
+         * @return <code>false</code> if the consumers have been halted before processing all the samples or if
+         * spilled samples could not be published before the timeout, those are counted as dropped
+         */
+        boolean shutdown( long timeoutNanos )
+        {
+            long deadline = System.nanoTime() + timeoutNanos;
+            boolean drained = true;
+            if ( this.overflow != null && !drainOverflow( deadline ) )
+            {
+                synchronized ( this.overflow )
+                {
+                    dropped.add( this.overflow.size() );
+                    this.overflow.clear();
+                }
+                drained = false;
+            }
+            // not Disruptor.shutdown: it ignores the consumers whose thread has not started yet
+            long cursor = this.ringBuffer.getCursor();
+            while ( this.ringBuffer.getMinimumGatingSequence() < cursor )
+            {
+                if ( deadline - System.nanoTime() <= 0 )
+                {
+                    this.disruptor.halt();
+                    return false;
+                }
+                LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( 1 ) );
+            }
+            this.disruptor.halt();
+            return drained;
+        }
     }
 
 }
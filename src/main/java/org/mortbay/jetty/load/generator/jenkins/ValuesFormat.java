@@ -0,0 +1,131 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output formats of the per request samples written by {@link ValuesFileWriter}
+ */
+public enum ValuesFormat
+{
+    /**
+     * pipe delimited text lines, see {@link TextValuesRecordWriter}
+     */
+    TEXT,
+    /**
+     * fixed width binary records, see {@link BinaryValuesFormat}
+     */
+    BINARY,
+    /**
+     * fixed width binary records appended to memory mapped segments, see {@link MappedSegmentValuesRecordWriter}
+     */
+    MAPPED;
+
+    /**
+     * size in bytes of the segments used by {@link #MAPPED}
+     */
+    public static final String SEGMENT_SIZE_PROPERTY = "loadgenerator.values.segment.size";
+
+    /**
+     * if <code>true</code> the segments used by {@link #MAPPED} are fully touched when created
+     */
+    public static final String SEGMENT_PREALLOCATE_PROPERTY = "loadgenerator.values.segment.preallocate";
+
+    /**
+     * @return path of the segment number <code>index</code> of a samples file split in segments
+     */
+    public static Path segmentPath( Path path, int index )
+    {
+        return Paths.get( path.toString() + "." + index );
+    }
+
+    /**
+     * deletes the consecutive segments of a samples file
+     */
+    public static void deleteSegments( Path path )
+        throws IOException
+    {
+        for ( int i = 0; Files.deleteIfExists( segmentPath( path, i ) ); i++ )
+        {
+            // no op
+        }
+    }
+
+    /**
+     * @return the files holding the samples written to path, in order: the file itself or its segments
+     * (segments of segments when rolling memory mapped files)
+     */
+    public static List<Path> samplesFiles( Path path )
+    {
+        return samplesFiles( path, 2 );
+    }
+
+    private static List<Path> samplesFiles( Path path, int depth )
+    {
+        List<Path> files = new ArrayList<>();
+        if ( Files.exists( path ) )
+        {
+            files.add( path );
+        }
+        else if ( depth > 0 )
+        {
+            List<Path> segmentFiles;
+            for ( int i = 0; !( segmentFiles = samplesFiles( segmentPath( path, i ), depth - 1 ) ).isEmpty(); i++ )
+            {
+                files.addAll( segmentFiles );
+            }
+        }
+        return files;
+    }
+
+    public ValuesRecordWriter newRecordWriter( Path path, ValuesDictionary dictionary )
+        throws IOException
+    {
+        return newRecordWriter( path, dictionary, ValuesCompression.NONE );
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@link #MAPPED} is used with compression
+     */
+    public ValuesRecordWriter newRecordWriter( Path path, ValuesDictionary dictionary, ValuesCompression compression )
+        throws IOException
+    {
+        switch ( this )
+        {
+            case BINARY:
+                return new BinaryValuesRecordWriter( compression.newOutputStream( path ), dictionary );
+            case MAPPED:
+                if ( compression != ValuesCompression.NONE )
+                {
+                    throw new IllegalArgumentException( "memory mapped segments cannot be compressed" );
+                }
+                return new MappedSegmentValuesRecordWriter( path, dictionary, //
+                                                            Long.getLong( SEGMENT_SIZE_PROPERTY, 64 * 1024 * 1024 ), //
+                                                            Boolean.getBoolean( SEGMENT_PREALLOCATE_PROPERTY ) );
+            default:
+                return new TextValuesRecordWriter( compression.newOutputStream( path ), dictionary );
+        }
+    }
+}
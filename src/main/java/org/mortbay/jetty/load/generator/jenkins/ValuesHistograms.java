@@ -0,0 +1,344 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.lmax.disruptor.EventHandler;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Second consumer of the ring buffer recording the response and latency durations (nano seconds) into
+ * global and per path histograms while the events flow.
+ * <p>
+ * Every {@link #INTERVAL_PROPERTY} seconds the interval histograms are added to the cumulative histograms
+ * of the run and appended to a HdrHistogram log (tags <code>response</code>, <code>latency</code>,
+ * <code>response:path</code>, <code>latency:path</code>).
+ * <p>
+ * When the run has an intended request rate, see {@link #setExpectedInterval(long)}, corrected histograms
+ * are recorded as well using HdrHistogram coordinated omission correction: a sample taking longer than the
+ * expected interval between requests also accounts for the requests which should have been sent while waiting.
+ * They are logged with a <code>corrected-</code> tag prefix.
+ * <p>
+ * The samples of the warmup phase are ignored unless {@link #setIncludeWarmup(boolean)} is set.
+ */
+public class ValuesHistograms
+    implements EventHandler<Values>, Closeable
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( ValuesHistograms.class );
+
+    /**
+     * interval in seconds of the histogram log, <code>0</code> disables the log
+     */
+    public static final String INTERVAL_PROPERTY = "loadgenerator.histogram.interval";
+
+    private static final int DEFAULT_INTERVAL = 5;
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final ValuesDictionary dictionary;
+
+    private final Series response = new Series( "response" );
+
+    private final Series latency = new Series( "latency" );
+
+    private volatile Series[] pathSeries = new Series[0];
+
+    private volatile long expectedInterval;
+
+    private volatile boolean includeWarmup;
+
+    private HistogramLogWriter logWriter;
+
+    private ScheduledExecutorService scheduler;
+
+    public ValuesHistograms( ValuesDictionary dictionary )
+    {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * clear the histograms and start logging intervals to the given file
+     */
+    public synchronized void open( Path logPath )
+        throws IOException
+    {
+        close();
+        response.clear();
+        latency.clear();
+        pathSeries = new Series[0];
+        int interval = Integer.getInteger( INTERVAL_PROPERTY, DEFAULT_INTERVAL );
+        if ( interval > 0 )
+        {
+            logWriter = new HistogramLogWriter( logPath.toFile() );
+            logWriter.outputLogFormatVersion();
+            long now = System.currentTimeMillis();
+            logWriter.outputStartTime( now );
+            logWriter.setBaseTime( now );
+            logWriter.outputLegend();
+        }
+        else
+        {
+            interval = DEFAULT_INTERVAL;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "loadgenerator-histograms" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        scheduler.scheduleAtFixedRate( this::logInterval, interval, interval, TimeUnit.SECONDS );
+    }
+
+    /**
+     * @param expectedInterval nano seconds between two requests of a load generator thread at the intended
+     * rate, <code>0</code> to not record corrected histograms
+     */
+    public void setExpectedInterval( long expectedInterval )
+    {
+        this.expectedInterval = Math.max( 0, expectedInterval );
+    }
+
+    public long getExpectedInterval()
+    {
+        return expectedInterval;
+    }
+
+    public void setIncludeWarmup( boolean includeWarmup )
+    {
+        this.includeWarmup = includeWarmup;
+    }
+
+    public boolean isIncludeWarmup()
+    {
+        return includeWarmup;
+    }
+
+    @Override
+    public void onEvent( Values values, long sequence, boolean endOfBatch )
+    {
+        if ( values.isWarmup() && !includeWarmup )
+        {
+            return;
+        }
+        long responseTime = values.getResponseDuration();
+        long latencyTime = values.getLatencyDuration();
+        long expectedInterval = this.expectedInterval;
+        response.record( responseTime, expectedInterval );
+        latency.record( latencyTime, expectedInterval );
+        // response and latency series of each path id are stored next to each other
+        int index = values.getPathId() * 2;
+        Series[] series = this.pathSeries;
+        if ( index + 1 >= series.length )
+        {
+            series = growPathSeries( values.getPathId() );
+        }
+        series[index].record( responseTime, expectedInterval );
+        series[index + 1].record( latencyTime, expectedInterval );
+    }
+
+    private synchronized Series[] growPathSeries( int pathId )
+    {
+        Series[] current = this.pathSeries;
+        if ( pathId * 2 + 1 < current.length )
+        {
+            return current;
+        }
+        Series[] grown = Arrays.copyOf( current, ( pathId + 1 ) * 2 );
+        for ( int i = current.length / 2; i <= pathId; i++ )
+        {
+            String path = tag( dictionary.getPathLabel( i ) );
+            grown[i * 2] = new Series( "response:" + path );
+            grown[i * 2 + 1] = new Series( "latency:" + path );
+        }
+        this.pathSeries = grown;
+        return grown;
+    }
+
+    /**
+     * tags of the histogram log cannot contain separators
+     */
+    private static String tag( String path )
+    {
+        return path.replaceAll( "[\\s,]", "_" );
+    }
+
+    private synchronized void logInterval()
+    {
+        try
+        {
+            response.interval( logWriter );
+            latency.interval( logWriter );
+            for ( Series series : pathSeries )
+            {
+                series.interval( logWriter );
+            }
+        }
+        catch ( Exception e )
+        {
+            LOGGER.warn( "cannot log histograms interval: " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * @return a copy of the response time histogram of the run up to the last interval, or of the path
+     * if not <code>null</code> (<code>null</code> if the path is unknown)
+     */
+    public synchronized Histogram getResponseHistogram( String path )
+    {
+        return snapshot( response, path, 0, false );
+    }
+
+    /**
+     * @return same as {@link #getResponseHistogram(String)} corrected for coordinated omission,
+     * empty if there is no expected interval
+     */
+    public synchronized Histogram getCorrectedResponseHistogram( String path )
+    {
+        return snapshot( response, path, 0, true );
+    }
+
+    /**
+     * @return a copy of the latency time histogram of the run up to the last interval, or of the path
+     * if not <code>null</code> (<code>null</code> if the path is unknown)
+     */
+    public synchronized Histogram getLatencyHistogram( String path )
+    {
+        return snapshot( latency, path, 1, false );
+    }
+
+    /**
+     * @return same as {@link #getLatencyHistogram(String)} corrected for coordinated omission,
+     * empty if there is no expected interval
+     */
+    public synchronized Histogram getCorrectedLatencyHistogram( String path )
+    {
+        return snapshot( latency, path, 1, true );
+    }
+
+    private Histogram snapshot( Series global, String path, int offset, boolean corrected )
+    {
+        Series series = global;
+        if ( path != null )
+        {
+            int index = dictionary.findPathId( path ) * 2 + offset;
+            Series[] pathSeries = this.pathSeries;
+            if ( index < 0 || index >= pathSeries.length )
+            {
+                return null;
+            }
+            series = pathSeries[index];
+        }
+        return ( corrected ? series.corrected : series.raw ).cumulative.copy();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if ( scheduler != null )
+        {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        logInterval();
+        if ( logWriter != null )
+        {
+            logWriter.close();
+            logWriter = null;
+        }
+    }
+
+    private static class Series
+    {
+        private final Recording raw;
+
+        private final Recording corrected;
+
+        Series( String tag )
+        {
+            this.raw = new Recording( tag );
+            this.corrected = new Recording( "corrected-" + tag );
+        }
+
+        void record( long value, long expectedInterval )
+        {
+            raw.recorder.recordValue( value );
+            if ( expectedInterval > 0 )
+            {
+                corrected.recorder.recordValueWithExpectedInterval( value, expectedInterval );
+            }
+        }
+
+        void interval( HistogramLogWriter logWriter )
+        {
+            raw.interval( logWriter );
+            corrected.interval( logWriter );
+        }
+
+        void clear()
+        {
+            raw.clear();
+            corrected.clear();
+        }
+    }
+
+    private static class Recording
+    {
+        private final String tag;
+
+        private final Recorder recorder = new Recorder( SIGNIFICANT_DIGITS );
+
+        private final Histogram cumulative = new Histogram( SIGNIFICANT_DIGITS );
+
+        private Histogram interval;
+
+        Recording( String tag )
+        {
+            this.tag = tag;
+        }
+
+        void interval( HistogramLogWriter logWriter )
+        {
+            interval = recorder.getIntervalHistogram( interval );
+            cumulative.add( interval );
+            if ( logWriter != null && interval.getTotalCount() > 0 )
+            {
+                interval.setTag( tag );
+                logWriter.outputIntervalHistogram( interval );
+            }
+        }
+
+        void clear()
+        {
+            recorder.reset();
+            cumulative.reset();
+        }
+    }
+
+}
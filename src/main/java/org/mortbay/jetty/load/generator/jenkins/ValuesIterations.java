@@ -0,0 +1,267 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary of each iteration of a run written as json by {@link ValuesFileWriter} when an iteration ends,
+ * with the spread of the response time p99 across the iterations to tell a regression from run to run noise.
+ */
+public class ValuesIterations
+    implements Serializable
+{
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private List<Iteration> iterations = new ArrayList<>();
+
+    /**
+     * mean of the p99 response time of the iterations, nano seconds
+     */
+    private long meanP99;
+
+    /**
+     * standard deviation of the p99 response time of the iterations, nano seconds
+     */
+    private long p99StdDeviation;
+
+    private long minP99;
+
+    private long maxP99;
+
+    public List<Iteration> getIterations()
+    {
+        return iterations;
+    }
+
+    public void setIterations( List<Iteration> iterations )
+    {
+        this.iterations = iterations;
+    }
+
+    public long getMeanP99()
+    {
+        return meanP99;
+    }
+
+    public void setMeanP99( long meanP99 )
+    {
+        this.meanP99 = meanP99;
+    }
+
+    public long getP99StdDeviation()
+    {
+        return p99StdDeviation;
+    }
+
+    public void setP99StdDeviation( long p99StdDeviation )
+    {
+        this.p99StdDeviation = p99StdDeviation;
+    }
+
+    public long getMinP99()
+    {
+        return minP99;
+    }
+
+    public void setMinP99( long minP99 )
+    {
+        this.minP99 = minP99;
+    }
+
+    public long getMaxP99()
+    {
+        return maxP99;
+    }
+
+    public void setMaxP99( long maxP99 )
+    {
+        this.maxP99 = maxP99;
+    }
+
+    /**
+     * adds the iteration, replacing a previous summary of the same iteration, and updates the p99 spread
+     */
+    public ValuesIterations put( Iteration iteration )
+    {
+        iterations.removeIf( existing -> existing.getIteration() == iteration.getIteration() );
+        iterations.add( iteration );
+        iterations.sort( Comparator.comparingInt( Iteration::getIteration ) );
+        long sum = 0, min = Long.MAX_VALUE, max = 0;
+        for ( Iteration current : iterations )
+        {
+            sum += current.getP99();
+            min = Math.min( min, current.getP99() );
+            max = Math.max( max, current.getP99() );
+        }
+        double mean = (double) sum / iterations.size();
+        double variance = 0;
+        for ( Iteration current : iterations )
+        {
+            variance += ( current.getP99() - mean ) * ( current.getP99() - mean );
+        }
+        this.meanP99 = Math.round( mean );
+        this.p99StdDeviation = Math.round( Math.sqrt( variance / iterations.size() ) );
+        this.minP99 = min;
+        this.maxP99 = max;
+        return this;
+    }
+
+    /**
+     * @return the iterations read from the file, empty if it doesn't exist
+     */
+    public static ValuesIterations read( Path path )
+        throws IOException
+    {
+        return Files.exists( path ) //
+            ? OBJECT_MAPPER.readValue( path.toFile(), ValuesIterations.class ) //
+            : new ValuesIterations();
+    }
+
+    public void write( Path path )
+        throws IOException
+    {
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue( path.toFile(), this );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ValuesIterations{" + "iterations=" + iterations.size() + ", meanP99=" + meanP99
+            + ", p99StdDeviation=" + p99StdDeviation + ", minP99=" + minP99 + ", maxP99=" + maxP99 + '}';
+    }
+
+    /**
+     * Main figures of the measured samples of an iteration, times in nano seconds
+     */
+    public static class Iteration
+        implements Serializable
+    {
+        private int iteration;
+
+        private long samples;
+
+        private Map<Integer, Long> statuses = new TreeMap<>();
+
+        private long p50;
+
+        private long p99;
+
+        private long max;
+
+        public Iteration()
+        {
+            // no op
+        }
+
+        /**
+         * @param stats the stats of the iteration, see {@link ValuesFileWriter#getRecordingStats()}
+         */
+        public Iteration( int iteration, ValuesRecordingStats stats )
+        {
+            Map<String, Long> response = stats.getPercentiles() == null //
+                ? Collections.emptyMap() //
+                : stats.getPercentiles().getOrDefault( "response", Collections.emptyMap() );
+            this.iteration = iteration;
+            this.samples = stats.isWarmupIncluded() ? stats.getWritten() : stats.getWritten() - stats.getWarmup();
+            this.statuses = new TreeMap<>( stats.getStatuses() );
+            this.p50 = response.getOrDefault( "p50", 0L );
+            this.p99 = response.getOrDefault( "p99", 0L );
+            this.max = response.getOrDefault( "max", 0L );
+        }
+
+        public int getIteration()
+        {
+            return iteration;
+        }
+
+        public void setIteration( int iteration )
+        {
+            this.iteration = iteration;
+        }
+
+        public long getSamples()
+        {
+            return samples;
+        }
+
+        public void setSamples( long samples )
+        {
+            this.samples = samples;
+        }
+
+        public Map<Integer, Long> getStatuses()
+        {
+            return statuses;
+        }
+
+        public void setStatuses( Map<Integer, Long> statuses )
+        {
+            this.statuses = statuses;
+        }
+
+        public long getP50()
+        {
+            return p50;
+        }
+
+        public void setP50( long p50 )
+        {
+            this.p50 = p50;
+        }
+
+        public long getP99()
+        {
+            return p99;
+        }
+
+        public void setP99( long p99 )
+        {
+            this.p99 = p99;
+        }
+
+        public long getMax()
+        {
+            return max;
+        }
+
+        public void setMax( long max )
+        {
+            this.max = max;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Iteration{" + "iteration=" + iteration + ", samples=" + samples + ", p50=" + p50 + ", p99=" + p99
+                + ", max=" + max + '}';
+        }
+    }
+}
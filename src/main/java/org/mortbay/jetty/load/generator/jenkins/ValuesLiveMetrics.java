@@ -0,0 +1,418 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.lmax.disruptor.EventHandler;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Consumer of the ring buffers aggregating the samples of the run in progress every second (throughput,
+ * response time p50/p99/max and error rate, globally and per path) into a bounded buffer of the last
+ * {@link #CAPACITY_PROPERTY} windows, so a degraded run can be spotted and aborted before its end.
+ * <p>
+ * The recording usually runs on an agent, each window is forwarded to the {@link Sink} if any, see
+ * {@link LiveMetricsAction} for the controller side.
+ * The samples of the warmup phase are ignored unless {@link #setIncludeWarmup(boolean)} is set.
+ */
+public class ValuesLiveMetrics
+    implements EventHandler<Values>, Closeable
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( ValuesLiveMetrics.class );
+
+    /**
+     * number of one second windows kept, default 3600
+     */
+    public static final String CAPACITY_PROPERTY = "loadgenerator.live.capacity";
+
+    private final ValuesDictionary dictionary;
+
+    private final Aggregator total = new Aggregator();
+
+    private volatile Aggregator[] pathAggregators = new Aggregator[0];
+
+    private final Deque<Window> windows = new ArrayDeque<>();
+
+    private int capacity;
+
+    private String id;
+
+    private volatile boolean includeWarmup;
+
+    private volatile Sink sink;
+
+    /**
+     * nano time of the start of the current window
+     */
+    private long windowStart;
+
+    private ScheduledExecutorService scheduler;
+
+    private final List<Consumer<Window>> listeners = new CopyOnWriteArrayList<>();
+
+    public ValuesLiveMetrics( ValuesDictionary dictionary )
+    {
+        this.dictionary = dictionary;
+    }
+
+    public void setIncludeWarmup( boolean includeWarmup )
+    {
+        this.includeWarmup = includeWarmup;
+    }
+
+    /**
+     * @param sink receives all the windows of the run, the last partial one included, from the aggregating thread
+     */
+    public void setSink( Sink sink )
+    {
+        this.sink = sink;
+    }
+
+    /**
+     * clear the windows and start aggregating every second, the id is the one of the run in the logs
+     */
+    public synchronized void open( String id )
+    {
+        close();
+        this.id = id;
+        this.capacity = Math.max( 1, Integer.getInteger( CAPACITY_PROPERTY, 3600 ) );
+        this.windows.clear();
+        this.total.clear();
+        this.pathAggregators = new Aggregator[0];
+        this.windowStart = System.nanoTime();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "loadgenerator-live" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        this.scheduler.scheduleAtFixedRate( () -> aggregate( true ), 1, 1, TimeUnit.SECONDS );
+    }
+
+    @Override
+    public void onEvent( Values values, long sequence, boolean endOfBatch )
+    {
+        if ( values.isWarmup() && !includeWarmup )
+        {
+            return;
+        }
+        long responseTime = values.getResponseDuration();
+        int status = values.getStatus();
+        total.record( responseTime, status );
+        int pathId = values.getPathId();
+        Aggregator[] aggregators = this.pathAggregators;
+        if ( pathId >= aggregators.length )
+        {
+            aggregators = growPathAggregators( pathId );
+        }
+        aggregators[pathId].record( responseTime, status );
+    }
+
+    private synchronized Aggregator[] growPathAggregators( int pathId )
+    {
+        Aggregator[] current = this.pathAggregators;
+        if ( pathId < current.length )
+        {
+            return current;
+        }
+        Aggregator[] grown = Arrays.copyOf( current, pathId + 1 );
+        for ( int i = current.length; i <= pathId; i++ )
+        {
+            grown[i] = new Aggregator();
+        }
+        this.pathAggregators = grown;
+        return grown;
+    }
+
+    /**
+     * @param notify <code>false</code> for the last partial window of the run
+     */
+    private synchronized void aggregate( boolean notify )
+    {
+        Window window;
+        try
+        {
+            long now = System.nanoTime();
+            // the last window of the run is shorter than the period of the scheduler
+            long duration = Math.max( 1, now - windowStart );
+            windowStart = now;
+            window = new Window();
+            window.timestamp = System.currentTimeMillis();
+            window.total = total.aggregate( null, duration );
+            Aggregator[] aggregators = this.pathAggregators;
+            for ( int i = 0; i < aggregators.length; i++ )
+            {
+                Aggregate aggregate = aggregators[i].aggregate( dictionary.getPathLabel( i ), duration );
+                if ( aggregate.count > 0 )
+                {
+                    window.paths.add( aggregate );
+                }
+            }
+            if ( windows.size() == capacity )
+            {
+                windows.removeFirst();
+            }
+            windows.addLast( window );
+            if ( notify )
+            {
+                for ( Consumer<Window> listener : listeners )
+                {
+                    listener.accept( window );
+                }
+            }
+        }
+        catch ( Exception e )
+        {
+            LOGGER.warn( "cannot aggregate live metrics of " + id + ": " + e.getMessage(), e );
+            return;
+        }
+        Sink sink = this.sink;
+        if ( sink != null )
+        {
+            try
+            {
+                sink.onWindow( window );
+            }
+            catch ( Exception e )
+            {
+                LOGGER.warn( "cannot forward live metrics of " + id + ": " + e.getMessage(), e );
+            }
+        }
+    }
+
+    /**
+     * @param listener called with each new full window from the aggregating thread
+     */
+    public void addListener( Consumer<Window> listener )
+    {
+        listeners.add( listener );
+    }
+
+    /**
+     * @return the windows ended after the timestamp (epoch milliseconds), oldest first
+     */
+    public synchronized List<Window> getWindows( long since )
+    {
+        List<Window> result = new ArrayList<>();
+        for ( Window window : windows )
+        {
+            if ( window.timestamp > since )
+            {
+                result.add( window );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the last window, <code>null</code> if none
+     */
+    public synchronized Window getLastWindow()
+    {
+        return windows.peekLast();
+    }
+
+    /**
+     * aggregates the last window
+     */
+    @Override
+    public synchronized void close()
+    {
+        if ( scheduler != null )
+        {
+            scheduler.shutdownNow();
+            scheduler = null;
+            aggregate( false );
+        }
+    }
+
+    private static class Aggregator
+    {
+        private final Recorder recorder = new Recorder( 3 );
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder serverErrors = new LongAdder();
+
+        private Histogram interval;
+
+        void record( long responseTime, int status )
+        {
+            recorder.recordValue( responseTime );
+            if ( status < 100 || status >= 400 )
+            {
+                errors.increment();
+                if ( status >= 500 )
+                {
+                    serverErrors.increment();
+                }
+            }
+        }
+
+        /**
+         * @param duration nano seconds since the previous aggregate
+         */
+        Aggregate aggregate( String path, long duration )
+        {
+            interval = recorder.getIntervalHistogram( interval );
+            Aggregate aggregate = new Aggregate();
+            aggregate.path = path;
+            aggregate.count = interval.getTotalCount();
+            aggregate.errors = errors.sumThenReset();
+            aggregate.serverErrors = serverErrors.sumThenReset();
+            aggregate.throughput = Math.round( aggregate.count * (double) TimeUnit.SECONDS.toNanos( 1 ) / duration );
+            aggregate.p50 = interval.getValueAtPercentile( 50 );
+            aggregate.p99 = interval.getValueAtPercentile( 99 );
+            aggregate.max = interval.getMaxValue();
+            return aggregate;
+        }
+
+        void clear()
+        {
+            recorder.reset();
+            errors.reset();
+            serverErrors.reset();
+        }
+    }
+
+    /**
+     * Receives the windows of the run, possibly in another JVM
+     */
+    public interface Sink
+    {
+        void onWindow( Window window );
+    }
+
+    /**
+     * Aggregates of a one second window
+     */
+    public static class Window
+        implements Serializable
+    {
+        private long timestamp;
+
+        private Aggregate total;
+
+        private List<Aggregate> paths = new ArrayList<>();
+
+        /**
+         * @return end of the window, epoch milliseconds
+         */
+        public long getTimestamp()
+        {
+            return timestamp;
+        }
+
+        public Aggregate getTotal()
+        {
+            return total;
+        }
+
+        public List<Aggregate> getPaths()
+        {
+            return paths;
+        }
+    }
+
+    /**
+     * Aggregate of the samples of a path, or all of them, in a window. Times are in nano seconds.
+     */
+    public static class Aggregate
+        implements Serializable
+    {
+        private String path;
+
+        private long count, errors, serverErrors, throughput, p50, p99, max;
+
+        /**
+         * @return <code>null</code> for all the paths, {@link ValuesDictionary#NULL_LABEL} for the samples without
+         * path
+         */
+        public String getPath()
+        {
+            return path;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public long getErrors()
+        {
+            return errors;
+        }
+
+        public double getErrorRate()
+        {
+            return count == 0 ? 0 : (double) errors / count;
+        }
+
+        /**
+         * @return number of 5xx responses, also counted in the errors
+         */
+        public long getServerErrors()
+        {
+            return serverErrors;
+        }
+
+        public double get5xxRatio()
+        {
+            return count == 0 ? 0 : (double) serverErrors / count;
+        }
+
+        /**
+         * @return samples per second
+         */
+        public long getThroughput()
+        {
+            return throughput;
+        }
+
+        public long getP50()
+        {
+            return p50;
+        }
+
+        public long getP99()
+        {
+            return p99;
+        }
+
+        public long getMax()
+        {
+            return max;
+        }
+    }
+}
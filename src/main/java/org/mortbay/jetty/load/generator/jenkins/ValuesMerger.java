@@ -0,0 +1,204 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges binary sample files into a single stream ordered by event (request) timestamp.
+ * The samples of a file are in completion order, which differs from the request order by up to the longest
+ * response time: each file is first cut into sorted runs of at most {@link #runSize()} samples, then all the
+ * runs are merged, the head sample with the smallest event timestamp being written first.
+ */
+public final class ValuesMerger
+{
+
+    /**
+     * number of samples sorted in memory at once, default an eighth of the max heap up to {@link #RUN_SIZE}
+     */
+    public static final String RUN_SIZE_PROPERTY = "loadgenerator.values.merge.runSize";
+
+    /**
+     * maximum default number of samples sorted in memory at once
+     */
+    public static final int RUN_SIZE = 1 << 20;
+
+    /**
+     * rough heap footprint in bytes of a sample copy and its list slot
+     */
+    private static final int SAMPLE_FOOTPRINT = 96;
+
+    private static final Comparator<Values> EVENT_TIMESTAMP =
+        ( v1, v2 ) -> Long.compare( v1.getEventTimestamp(), v2.getEventTimestamp() );
+
+    private ValuesMerger()
+    {
+        // no op
+    }
+
+    /**
+     * @param inputs files written with {@link BinaryValuesFormat} using the same dictionary
+     * @return the number of samples written
+     */
+    public static long merge( List<Path> inputs, ValuesDictionary dictionary, ValuesRecordWriter output )
+        throws IOException
+    {
+        return merge( inputs, dictionary, output, runSize() );
+    }
+
+    /**
+     * @return the {@link #RUN_SIZE_PROPERTY} value, or the samples fitting in an eighth of the max heap
+     */
+    static int runSize()
+    {
+        long fromHeap = Runtime.getRuntime().maxMemory() / 8 / SAMPLE_FOOTPRINT;
+        return Math.max( 1, Integer.getInteger( RUN_SIZE_PROPERTY, (int) Math.min( RUN_SIZE, fromHeap ) ) );
+    }
+
+    /**
+     * @param runSize number of samples sorted in memory at once
+     * @return the number of samples written
+     */
+    public static long merge( List<Path> inputs, ValuesDictionary dictionary, ValuesRecordWriter output,
+                              int runSize )
+        throws IOException
+    {
+        List<Path> runs = new ArrayList<>();
+        try
+        {
+            for ( Path input : inputs )
+            {
+                sortRuns( input, dictionary, Math.max( 1, runSize ), runs );
+            }
+            return mergeSorted( runs, dictionary, output );
+        }
+        finally
+        {
+            for ( Path run : runs )
+            {
+                Files.deleteIfExists( run );
+            }
+        }
+    }
+
+    /**
+     * writes the samples of the input as sorted runs next to it
+     */
+    private static void sortRuns( Path input, ValuesDictionary dictionary, int runSize, List<Path> runs )
+        throws IOException
+    {
+        List<Values> run = new ArrayList<>( Math.min( runSize, 1 << 16 ) );
+        try (BinaryValuesRecordReader reader = new BinaryValuesRecordReader( input, dictionary ))
+        {
+            Values values = new Values();
+            while ( reader.read( values ) )
+            {
+                run.add( new Values().copy( values ) );
+                if ( run.size() == runSize )
+                {
+                    runs.add( writeRun( input, runs.size(), run, dictionary ) );
+                    run.clear();
+                }
+            }
+        }
+        if ( !run.isEmpty() )
+        {
+            runs.add( writeRun( input, runs.size(), run, dictionary ) );
+        }
+    }
+
+    private static Path writeRun( Path input, int index, List<Values> run, ValuesDictionary dictionary )
+        throws IOException
+    {
+        // stable: samples with the same timestamp keep their completion order
+        run.sort( EVENT_TIMESTAMP );
+        Path path = Paths.get( input + ".run-" + index );
+        try (ValuesRecordWriter writer = new BinaryValuesRecordWriter( Files.newOutputStream( path ), dictionary ))
+        {
+            for ( Values values : run )
+            {
+                writer.write( values );
+            }
+        }
+        return path;
+    }
+
+    private static long mergeSorted( List<Path> inputs, ValuesDictionary dictionary, ValuesRecordWriter output )
+        throws IOException
+    {
+        List<Head> heads = new ArrayList<>( inputs.size() );
+        PriorityQueue<Head> queue = new PriorityQueue<>( Math.max( 1, inputs.size() ), //
+            ( h1, h2 ) -> EVENT_TIMESTAMP.compare( h1.values, h2.values ) );
+        try
+        {
+            for ( Path input : inputs )
+            {
+                Head head = new Head( new BinaryValuesRecordReader( input, dictionary ) );
+                heads.add( head );
+                if ( head.next() )
+                {
+                    queue.add( head );
+                }
+            }
+            long count = 0;
+            Head head;
+            while ( ( head = queue.poll() ) != null )
+            {
+                output.write( head.values );
+                count++;
+                if ( head.next() )
+                {
+                    queue.add( head );
+                }
+            }
+            return count;
+        }
+        finally
+        {
+            for ( Head head : heads )
+            {
+                head.reader.close();
+            }
+        }
+    }
+
+    private static class Head
+    {
+        private final BinaryValuesRecordReader reader;
+
+        private final Values values = new Values();
+
+        Head( BinaryValuesRecordReader reader )
+        {
+            this.reader = reader;
+        }
+
+        boolean next()
+            throws IOException
+        {
+            return reader.read( values );
+        }
+    }
+}
@@ -0,0 +1,42 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads back the samples written by a {@link ValuesRecordWriter}, one record at a time.
+ */
+public interface ValuesRecordReader
+    extends Closeable
+{
+
+    /**
+     * @param values filled with the next sample
+     * @return <code>false</code> when there are no more complete sample
+     */
+    boolean read( Values values )
+        throws IOException;
+
+    /**
+     * @return offset in the uncompressed file of the next record
+     */
+    long getPosition();
+
+}
@@ -0,0 +1,43 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sink for the {@link Values} consumed from the ring buffer by {@link ValuesFileWriter}.
+ * Implementations are only ever called from the single consumer thread.
+ */
+public interface ValuesRecordWriter
+    extends Closeable
+{
+
+    void write( Values values )
+        throws IOException;
+
+    void flush()
+        throws IOException;
+
+    /**
+     * @return number of bytes written so far, before compression
+     */
+    long getWrittenBytes();
+
+}
@@ -0,0 +1,398 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counters of the recording pipeline for a run, they tell whether the recorded load is the load which has
+ * been generated. Written as json next to the samples file when the run ends.
+ */
+public class ValuesRecordingStats
+    implements Serializable
+{
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private ValuesBackPressure backPressure;
+
+    private int shards = 1;
+
+    private ValuesSampling sampling = ValuesSampling.ALL;
+
+    /**
+     * samples written to the samples file, less than written when sampling
+     */
+    private long recorded;
+
+    /**
+     * samples of the warmup phase, written to the samples file but not to the statistics unless included
+     */
+    private long warmup;
+
+    private boolean warmupIncluded;
+
+    /**
+     * number of samples per http status, including those not kept by the sampling
+     */
+    private Map<Integer, Long> statuses = new TreeMap<>();
+
+    private long published;
+
+    private long dropped;
+
+    private long spilled;
+
+    /**
+     * maximum number of samples waiting in the ring buffer
+     */
+    private long maxBacklog;
+
+    /**
+     * the value in nano seconds
+     */
+    private long blockedTime;
+
+    /**
+     * samples processed by the writer
+     */
+    private long written;
+
+    /**
+     * published samples not processed by the writer when the run ended
+     */
+    private long lost;
+
+    /**
+     * nano seconds between two requests of a load generator thread at the intended rate, <code>0</code> if unknown
+     */
+    private long expectedInterval;
+
+    /**
+     * p50, p90, p99, p99.9 and max in nano seconds of the response and latency histograms, and of their
+     * coordinated omission corrected version (<code>corrected-</code> prefix) when the expected interval is known
+     */
+    private Map<String, Map<String, Long>> percentiles = new TreeMap<>();
+
+    /**
+     * why the run has been aborted by the {@link ValuesSloEvaluator}, <code>null</code> if it has not
+     */
+    private String abortReason;
+
+    public ValuesBackPressure getBackPressure()
+    {
+        return backPressure;
+    }
+
+    public void setBackPressure( ValuesBackPressure backPressure )
+    {
+        this.backPressure = backPressure;
+    }
+
+    public ValuesRecordingStats backPressure( ValuesBackPressure backPressure )
+    {
+        this.backPressure = backPressure;
+        return this;
+    }
+
+    public int getShards()
+    {
+        return shards;
+    }
+
+    public void setShards( int shards )
+    {
+        this.shards = shards;
+    }
+
+    public ValuesRecordingStats shards( int shards )
+    {
+        this.shards = shards;
+        return this;
+    }
+
+    public ValuesSampling getSampling()
+    {
+        return sampling;
+    }
+
+    public void setSampling( ValuesSampling sampling )
+    {
+        this.sampling = sampling;
+    }
+
+    public ValuesRecordingStats sampling( ValuesSampling sampling )
+    {
+        this.sampling = sampling;
+        return this;
+    }
+
+    public long getRecorded()
+    {
+        return recorded;
+    }
+
+    public void setRecorded( long recorded )
+    {
+        this.recorded = recorded;
+    }
+
+    public ValuesRecordingStats recorded( long recorded )
+    {
+        this.recorded = recorded;
+        return this;
+    }
+
+    public long getWarmup()
+    {
+        return warmup;
+    }
+
+    public void setWarmup( long warmup )
+    {
+        this.warmup = warmup;
+    }
+
+    public ValuesRecordingStats warmup( long warmup )
+    {
+        this.warmup = warmup;
+        return this;
+    }
+
+    public boolean isWarmupIncluded()
+    {
+        return warmupIncluded;
+    }
+
+    public void setWarmupIncluded( boolean warmupIncluded )
+    {
+        this.warmupIncluded = warmupIncluded;
+    }
+
+    public ValuesRecordingStats warmupIncluded( boolean warmupIncluded )
+    {
+        this.warmupIncluded = warmupIncluded;
+        return this;
+    }
+
+    public Map<Integer, Long> getStatuses()
+    {
+        return statuses;
+    }
+
+    public void setStatuses( Map<Integer, Long> statuses )
+    {
+        this.statuses = statuses;
+    }
+
+    public ValuesRecordingStats statuses( Map<Integer, Long> statuses )
+    {
+        this.statuses = statuses;
+        return this;
+    }
+
+    public long getPublished()
+    {
+        return published;
+    }
+
+    public void setPublished( long published )
+    {
+        this.published = published;
+    }
+
+    public ValuesRecordingStats published( long published )
+    {
+        this.published = published;
+        return this;
+    }
+
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+    public void setDropped( long dropped )
+    {
+        this.dropped = dropped;
+    }
+
+    public ValuesRecordingStats dropped( long dropped )
+    {
+        this.dropped = dropped;
+        return this;
+    }
+
+    public long getSpilled()
+    {
+        return spilled;
+    }
+
+    public void setSpilled( long spilled )
+    {
+        this.spilled = spilled;
+    }
+
+    public ValuesRecordingStats spilled( long spilled )
+    {
+        this.spilled = spilled;
+        return this;
+    }
+
+    public long getMaxBacklog()
+    {
+        return maxBacklog;
+    }
+
+    public void setMaxBacklog( long maxBacklog )
+    {
+        this.maxBacklog = maxBacklog;
+    }
+
+    public ValuesRecordingStats maxBacklog( long maxBacklog )
+    {
+        this.maxBacklog = maxBacklog;
+        return this;
+    }
+
+    public long getBlockedTime()
+    {
+        return blockedTime;
+    }
+
+    public void setBlockedTime( long blockedTime )
+    {
+        this.blockedTime = blockedTime;
+    }
+
+    public ValuesRecordingStats blockedTime( long blockedTime )
+    {
+        this.blockedTime = blockedTime;
+        return this;
+    }
+
+    public long getWritten()
+    {
+        return written;
+    }
+
+    public void setWritten( long written )
+    {
+        this.written = written;
+    }
+
+    public ValuesRecordingStats written( long written )
+    {
+        this.written = written;
+        return this;
+    }
+
+    public long getLost()
+    {
+        return lost;
+    }
+
+    public void setLost( long lost )
+    {
+        this.lost = lost;
+    }
+
+    public ValuesRecordingStats lost( long lost )
+    {
+        this.lost = lost;
+        return this;
+    }
+
+    public long getExpectedInterval()
+    {
+        return expectedInterval;
+    }
+
+    public void setExpectedInterval( long expectedInterval )
+    {
+        this.expectedInterval = expectedInterval;
+    }
+
+    public ValuesRecordingStats expectedInterval( long expectedInterval )
+    {
+        this.expectedInterval = expectedInterval;
+        return this;
+    }
+
+    public Map<String, Map<String, Long>> getPercentiles()
+    {
+        return percentiles;
+    }
+
+    public void setPercentiles( Map<String, Map<String, Long>> percentiles )
+    {
+        this.percentiles = percentiles;
+    }
+
+    public ValuesRecordingStats percentiles( Map<String, Map<String, Long>> percentiles )
+    {
+        this.percentiles = percentiles;
+        return this;
+    }
+
+    public String getAbortReason()
+    {
+        return abortReason;
+    }
+
+    public void setAbortReason( String abortReason )
+    {
+        this.abortReason = abortReason;
+    }
+
+    public ValuesRecordingStats abortReason( String abortReason )
+    {
+        this.abortReason = abortReason;
+        return this;
+    }
+
+    public void write( Path path )
+        throws IOException
+    {
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue( path.toFile(), this );
+    }
+
+    public static ValuesRecordingStats read( Path path )
+        throws IOException
+    {
+        return OBJECT_MAPPER.readValue( path.toFile(), ValuesRecordingStats.class );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ValuesRecordingStats{" + "backPressure=" + backPressure + ", shards=" + shards + ", sampling="
+            + sampling + ", recorded=" + recorded + ", warmup=" + warmup + ", warmupIncluded=" + warmupIncluded
+            + ", statuses=" + statuses + ", published=" + published
+            + ", dropped=" + dropped + ", spilled=" + spilled + ", maxBacklog=" + maxBacklog + ", blockedTime="
+            + blockedTime + ", written=" + written + ", lost=" + lost + ", expectedInterval=" + expectedInterval
+            + ", percentiles=" + percentiles + ", abortReason='" + abortReason + '\'' + '}';
+    }
+}
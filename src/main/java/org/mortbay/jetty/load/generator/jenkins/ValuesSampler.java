@@ -0,0 +1,197 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which samples reach the record writer, see {@link ValuesSampling}.
+ * Not thread safe, each consumer thread has its own sampler. The base class keeps every sample.
+ */
+public class ValuesSampler
+{
+
+    private long recorded;
+
+    /**
+     * @param values the sample, only valid during the call
+     */
+    public void sample( Values values, ValuesRecordWriter recordWriter )
+        throws IOException
+    {
+        write( values, recordWriter );
+    }
+
+    /**
+     * writes the samples still held by the sampler, called before the record writer is closed
+     */
+    public void flush( ValuesRecordWriter recordWriter )
+        throws IOException
+    {
+        // no op
+    }
+
+    protected void write( Values values, ValuesRecordWriter recordWriter )
+        throws IOException
+    {
+        recordWriter.write( values );
+        recorded++;
+    }
+
+    /**
+     * @return the number of samples written
+     */
+    public long getRecorded()
+    {
+        return recorded;
+    }
+
+    static class Rate
+        extends ValuesSampler
+    {
+        private final SplittableRandom random = new SplittableRandom();
+
+        private final double rate;
+
+        Rate( double rate )
+        {
+            this.rate = rate;
+        }
+
+        @Override
+        public void sample( Values values, ValuesRecordWriter recordWriter )
+            throws IOException
+        {
+            if ( random.nextDouble() < rate )
+            {
+                write( values, recordWriter );
+            }
+        }
+    }
+
+    /**
+     * Algorithm R on the event timestamps of each window, the reservoir is written in time order when a sample
+     * of the next window comes in.
+     */
+    static class Reservoir
+        extends ValuesSampler
+    {
+        private final SplittableRandom random = new SplittableRandom();
+
+        private final Values[] reservoir;
+
+        private final long window;
+
+        private long windowEnd;
+
+        private long seen;
+
+        Reservoir( int size, long windowSeconds )
+        {
+            this.reservoir = new Values[Math.max( 1, size )];
+            for ( int i = 0; i < reservoir.length; i++ )
+            {
+                reservoir[i] = new Values();
+            }
+            this.window = TimeUnit.SECONDS.toNanos( Math.max( 1, windowSeconds ) );
+        }
+
+        @Override
+        public void sample( Values values, ValuesRecordWriter recordWriter )
+            throws IOException
+        {
+            if ( seen == 0 || values.getEventTimestamp() - windowEnd >= 0 )
+            {
+                flush( recordWriter );
+                windowEnd = values.getEventTimestamp() + window;
+            }
+            long index = seen++;
+            if ( index >= reservoir.length )
+            {
+                index = random.nextLong( seen );
+            }
+            if ( index < reservoir.length )
+            {
+                reservoir[(int) index].copy( values );
+            }
+        }
+
+        @Override
+        public void flush( ValuesRecordWriter recordWriter )
+            throws IOException
+        {
+            int size = (int) Math.min( seen, reservoir.length );
+            Arrays.sort( reservoir, 0, size, Comparator.comparingLong( Values::getEventTimestamp ) );
+            for ( int i = 0; i < size; i++ )
+            {
+                write( reservoir[i], recordWriter );
+            }
+            seen = 0;
+        }
+    }
+
+    /**
+     * Keeps the errors and the slowest responses. The p99 threshold is computed from all the samples seen
+     * by this sampler and refreshed every window, until the first refresh every sample is kept.
+     */
+    static class Tail
+        extends Rate
+    {
+        private final Histogram responseTimes = new Histogram( 3 );
+
+        private final long window;
+
+        private long windowEnd;
+
+        private long threshold;
+
+        Tail( double rate, long windowSeconds )
+        {
+            super( rate );
+            this.window = TimeUnit.SECONDS.toNanos( Math.max( 1, windowSeconds ) );
+        }
+
+        @Override
+        public void sample( Values values, ValuesRecordWriter recordWriter )
+            throws IOException
+        {
+            if ( responseTimes.getTotalCount() == 0 || values.getEventTimestamp() - windowEnd >= 0 )
+            {
+                threshold = responseTimes.getTotalCount() > 0 ? responseTimes.getValueAtPercentile( 99 ) : 0;
+                windowEnd = values.getEventTimestamp() + window;
+            }
+            long responseTime = values.getResponseDuration();
+            responseTimes.recordValue( responseTime );
+            int status = values.getStatus();
+            if ( status < 100 || status >= 400 || responseTime > threshold )
+            {
+                write( values, recordWriter );
+            }
+            else
+            {
+                super.sample( values, recordWriter );
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Locale;
+
+/**
+ * Which samples {@link ValuesFileWriter} keeps in the samples file. Whatever the mode the histograms and
+ * the status counters see every sample, only the raw file is sampled.
+ */
+public enum ValuesSampling
+{
+    /**
+     * every sample is written
+     */
+    ALL,
+    /**
+     * a random fraction {@link #RATE_PROPERTY} of the samples is written
+     */
+    RATE,
+    /**
+     * at most {@link #RESERVOIR_SIZE_PROPERTY} samples picked uniformly in each window
+     * of {@link #WINDOW_PROPERTY} seconds are written
+     */
+    RESERVOIR,
+    /**
+     * errors (status not 1xx to 3xx) and samples with a response time over the p99 of the run so far
+     * (updated every {@link #WINDOW_PROPERTY} seconds) are always written, the others are sampled
+     * at {@link #RATE_PROPERTY}
+     */
+    TAIL;
+
+    /**
+     * see {@link ValuesSampling}, default all
+     */
+    public static final String SAMPLING_PROPERTY = "loadgenerator.values.sampling";
+
+    /**
+     * fraction of the samples kept by {@link #RATE} and {@link #TAIL}, default 0.01
+     */
+    public static final String RATE_PROPERTY = "loadgenerator.values.sampling.rate";
+
+    /**
+     * samples kept per window by {@link #RESERVOIR}, default 1000
+     */
+    public static final String RESERVOIR_SIZE_PROPERTY = "loadgenerator.values.sampling.reservoir.size";
+
+    /**
+     * window in seconds of {@link #RESERVOIR} and {@link #TAIL}, default 1
+     */
+    public static final String WINDOW_PROPERTY = "loadgenerator.values.sampling.window";
+
+    /**
+     * @return a sampler configured from the system properties, used by a single consumer thread
+     */
+    public ValuesSampler newSampler()
+    {
+        double rate = Double.parseDouble( System.getProperty( RATE_PROPERTY, "0.01" ) );
+        long window = Long.getLong( WINDOW_PROPERTY, 1 );
+        switch ( this )
+        {
+            case RATE:
+                return new ValuesSampler.Rate( rate );
+            case RESERVOIR:
+                return new ValuesSampler.Reservoir( Integer.getInteger( RESERVOIR_SIZE_PROPERTY, 1000 ), window );
+            case TAIL:
+                return new ValuesSampler.Tail( rate, window );
+            default:
+                return new ValuesSampler();
+        }
+    }
+
+    /**
+     * @return {@link #ALL} if value is empty
+     */
+    public static ValuesSampling of( String value )
+    {
+        return StringUtils.isBlank( value ) ? ALL : valueOf( value.trim().toUpperCase( Locale.ENGLISH ) );
+    }
+}
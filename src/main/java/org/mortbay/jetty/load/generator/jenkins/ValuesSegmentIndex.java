@@ -0,0 +1,207 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the segments of a rolled samples file, written as <code>path.segments</code> with one line per
+ * segment: <code>segment|firstTimestamp|lastTimestamp|records|startMillis|endMillis</code>.
+ * Timestamps are the min and max event timestamps (nano seconds) of the segment samples, millis are the wall
+ * clock times the segment has been opened and closed.
+ */
+public class ValuesSegmentIndex
+{
+
+    private ValuesSegmentIndex()
+    {
+        // no op
+    }
+
+    public static Path indexPath( Path path )
+    {
+        return Paths.get( path.toString() + ".segments" );
+    }
+
+    public static void append( Path path, Segment segment )
+        throws IOException
+    {
+        try (BufferedWriter writer = Files.newBufferedWriter( indexPath( path ), StandardCharsets.UTF_8,
+                                                              StandardOpenOption.CREATE, StandardOpenOption.APPEND ))
+        {
+            writer.write( segment.getIndex() + "|" + segment.getFirstTimestamp() + "|" + segment.getLastTimestamp() //
+                              + "|" + segment.getRecords() + "|" + segment.getStartMillis() + "|"
+                              + segment.getEndMillis() );
+            writer.newLine();
+        }
+    }
+
+    /**
+     * @return the segments of the file, empty if the file has not been rolled
+     */
+    public static List<Segment> read( Path path )
+        throws IOException
+    {
+        Path indexPath = indexPath( path );
+        if ( !Files.exists( indexPath ) )
+        {
+            return new ArrayList<>();
+        }
+        return Files.readAllLines( indexPath, StandardCharsets.UTF_8 ).stream() //
+            .filter( StringUtils::isNotBlank ) //
+            .map( line -> {
+                String[] fields = StringUtils.split( line, '|' );
+                return new Segment( Integer.parseInt( fields[0] ) ) //
+                    .firstTimestamp( Long.parseLong( fields[1] ) ) //
+                    .lastTimestamp( Long.parseLong( fields[2] ) ) //
+                    .records( Long.parseLong( fields[3] ) ) //
+                    .startMillis( Long.parseLong( fields[4] ) ) //
+                    .endMillis( Long.parseLong( fields[5] ) );
+            } ) //
+            .collect( Collectors.toList() );
+    }
+
+    /**
+     * @return the segments having samples with an event timestamp between start and end (inclusive)
+     */
+    public static List<Segment> between( Path path, long startTimestamp, long endTimestamp )
+        throws IOException
+    {
+        return read( path ).stream() //
+            .filter( segment -> segment.getLastTimestamp() >= startTimestamp //
+                && segment.getFirstTimestamp() <= endTimestamp ) //
+            .collect( Collectors.toList() );
+    }
+
+    public static void delete( Path path )
+        throws IOException
+    {
+        Files.deleteIfExists( indexPath( path ) );
+    }
+
+    public static class Segment
+    {
+        private final int index;
+
+        private long firstTimestamp = Long.MAX_VALUE, lastTimestamp = Long.MIN_VALUE;
+
+        private long records;
+
+        private long startMillis, endMillis;
+
+        public Segment( int index )
+        {
+            this.index = index;
+        }
+
+        /**
+         * account a sample of the segment
+         */
+        public void add( long eventTimestamp )
+        {
+            firstTimestamp = Math.min( firstTimestamp, eventTimestamp );
+            lastTimestamp = Math.max( lastTimestamp, eventTimestamp );
+            records++;
+        }
+
+        public int getIndex()
+        {
+            return index;
+        }
+
+        public Path getPath( Path path )
+        {
+            return ValuesFormat.segmentPath( path, index );
+        }
+
+        public long getFirstTimestamp()
+        {
+            return firstTimestamp;
+        }
+
+        public Segment firstTimestamp( long firstTimestamp )
+        {
+            this.firstTimestamp = firstTimestamp;
+            return this;
+        }
+
+        public long getLastTimestamp()
+        {
+            return lastTimestamp;
+        }
+
+        public Segment lastTimestamp( long lastTimestamp )
+        {
+            this.lastTimestamp = lastTimestamp;
+            return this;
+        }
+
+        public long getRecords()
+        {
+            return records;
+        }
+
+        public Segment records( long records )
+        {
+            this.records = records;
+            return this;
+        }
+
+        public long getStartMillis()
+        {
+            return startMillis;
+        }
+
+        public Segment startMillis( long startMillis )
+        {
+            this.startMillis = startMillis;
+            return this;
+        }
+
+        public long getEndMillis()
+        {
+            return endMillis;
+        }
+
+        public Segment endMillis( long endMillis )
+        {
+            this.endMillis = endMillis;
+            return this;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Segment{" + "index=" + index + ", firstTimestamp=" + firstTimestamp + ", lastTimestamp="
+                + lastTimestamp + ", records=" + records + ", startMillis=" + startMillis + ", endMillis="
+                + endMillis + '}';
+        }
+    }
+}
@@ -0,0 +1,46 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import java.io.Serializable;
+
+/**
+ * Checks the live aggregates of a run against service level objectives, see
+ * {@link ValuesFileWriter#sloEvaluator(ValuesSloEvaluator)}.
+ * Called every second from a single thread with the last {@link ValuesLiveMetrics.Window}.
+ */
+public interface ValuesSloEvaluator
+    extends Serializable
+{
+
+    /**
+     * @param expectedQps requests per second intended by the load generator configuration, <code>0</code>
+     * if unknown
+     * @return why the run must be aborted, <code>null</code> if the objectives are met
+     */
+    String evaluate( ValuesLiveMetrics.Window window, long expectedQps );
+
+    /**
+     * called when a run starts
+     */
+    default void reset()
+    {
+        // no op
+    }
+
+}
@@ -0,0 +1,225 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.lmax.disruptor.EventHandler;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Consumer of the ring buffers counting the responses per status family, per path and per window of
+ * {@link #WINDOW_PROPERTY} seconds while the events flow, summarized in a {@link ValuesStatusSummary}.
+ * <p>
+ * Counters are lock free so the consumers of all the shards share them: each path has chunks of
+ * {@link #CHUNK_WINDOWS} windows which are never copied, only the arrays referencing them grow.
+ * The samples of the warmup phase are ignored unless {@link #setIncludeWarmup(boolean)} is set.
+ */
+public class ValuesStatusCounters
+    implements EventHandler<Values>
+{
+
+    /**
+     * width of the windows in seconds, default 1
+     */
+    public static final String WINDOW_PROPERTY = "loadgenerator.status.window";
+
+    private static final int CHUNK_WINDOWS = 64;
+
+    private static final int CHUNK_SIZE = CHUNK_WINDOWS * ValuesStatusSummary.FAMILIES;
+
+    private final ValuesDictionary dictionary;
+
+    private volatile PathCounters[] pathCounters = new PathCounters[0];
+
+    private long startNanos, startMillis, windowNanos;
+
+    private volatile boolean includeWarmup;
+
+    public ValuesStatusCounters( ValuesDictionary dictionary )
+    {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * clear the counters, the first window starts now
+     */
+    public synchronized void open()
+    {
+        pathCounters = new PathCounters[0];
+        windowNanos = TimeUnit.SECONDS.toNanos( Math.max( 1, Long.getLong( WINDOW_PROPERTY, 1 ) ) );
+        startMillis = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+    }
+
+    public void setIncludeWarmup( boolean includeWarmup )
+    {
+        this.includeWarmup = includeWarmup;
+    }
+
+    public boolean isIncludeWarmup()
+    {
+        return includeWarmup;
+    }
+
+    @Override
+    public void onEvent( Values values, long sequence, boolean endOfBatch )
+    {
+        if ( values.isWarmup() && !includeWarmup )
+        {
+            return;
+        }
+        int pathId = values.getPathId();
+        PathCounters[] counters = this.pathCounters;
+        if ( pathId >= counters.length )
+        {
+            counters = growPathCounters( pathId );
+        }
+        // samples requested before the start are counted in the first window
+        long window = Math.max( 0, ( values.getEventTimestamp() - startNanos ) / windowNanos );
+        counters[pathId].increment( (int) window, family( values.getStatus() ) );
+    }
+
+    private static int family( int status )
+    {
+        int family = status / 100;
+        return family > 0 && family < ValuesStatusSummary.FAMILIES ? family : 0;
+    }
+
+    private synchronized PathCounters[] growPathCounters( int pathId )
+    {
+        PathCounters[] current = this.pathCounters;
+        if ( pathId < current.length )
+        {
+            return current;
+        }
+        PathCounters[] grown = Arrays.copyOf( current, pathId + 1 );
+        for ( int i = current.length; i <= pathId; i++ )
+        {
+            grown[i] = new PathCounters();
+        }
+        this.pathCounters = grown;
+        return grown;
+    }
+
+    /**
+     * @return a snapshot of the counters, complete once the consumers are stopped
+     */
+    public ValuesStatusSummary getSummary()
+    {
+        PathCounters[] counters = this.pathCounters;
+        int windows = 0;
+        for ( PathCounters pathCounter : counters )
+        {
+            windows = Math.max( windows, pathCounter.windows() );
+        }
+        long[][] total = new long[windows][ValuesStatusSummary.FAMILIES];
+        Map<String, long[][]> paths = new TreeMap<>();
+        for ( int pathId = 0; pathId < counters.length; pathId++ )
+        {
+            long[][] pathWindows = counters[pathId].snapshot( windows );
+            for ( int window = 0; window < windows; window++ )
+            {
+                for ( int family = 0; family < ValuesStatusSummary.FAMILIES; family++ )
+                {
+                    total[window][family] += pathWindows[window][family];
+                }
+            }
+            paths.put( dictionary.getPathLabel( pathId ), pathWindows );
+        }
+        return new ValuesStatusSummary() //
+            .startTime( startMillis ) //
+            .window( TimeUnit.NANOSECONDS.toMillis( windowNanos ) ) //
+            .total( total ) //
+            .paths( paths );
+    }
+
+    private static class PathCounters
+    {
+        private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+
+        /**
+         * highest window with a count, plus one
+         */
+        private volatile int windows;
+
+        void increment( int window, int family )
+        {
+            int chunk = window / CHUNK_WINDOWS;
+            AtomicLongArray[] current = this.chunks;
+            if ( chunk >= current.length )
+            {
+                current = grow( chunk );
+            }
+            current[chunk].incrementAndGet( ( window % CHUNK_WINDOWS ) * ValuesStatusSummary.FAMILIES + family );
+            if ( window >= windows )
+            {
+                updateWindows( window + 1 );
+            }
+        }
+
+        private synchronized void updateWindows( int windows )
+        {
+            this.windows = Math.max( this.windows, windows );
+        }
+
+        private synchronized AtomicLongArray[] grow( int chunk )
+        {
+            AtomicLongArray[] current = this.chunks;
+            if ( chunk < current.length )
+            {
+                return current;
+            }
+            AtomicLongArray[] grown = Arrays.copyOf( current, chunk + 1 );
+            for ( int i = current.length; i <= chunk; i++ )
+            {
+                grown[i] = new AtomicLongArray( CHUNK_SIZE );
+            }
+            this.chunks = grown;
+            return grown;
+        }
+
+        int windows()
+        {
+            return windows;
+        }
+
+        long[][] snapshot( int windows )
+        {
+            AtomicLongArray[] current = this.chunks;
+            long[][] counts = new long[windows][ValuesStatusSummary.FAMILIES];
+            for ( int window = 0; window < windows; window++ )
+            {
+                int chunk = window / CHUNK_WINDOWS;
+                if ( chunk >= current.length )
+                {
+                    break;
+                }
+                for ( int family = 0; family < ValuesStatusSummary.FAMILIES; family++ )
+                {
+                    counts[window][family] = current[chunk].get(
+                        ( window % CHUNK_WINDOWS ) * ValuesStatusSummary.FAMILIES + family );
+                }
+            }
+            return counts;
+        }
+    }
+}
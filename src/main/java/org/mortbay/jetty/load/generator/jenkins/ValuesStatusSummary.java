@@ -0,0 +1,172 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Number of responses per status family, per path and per time window of a run, written as json next to
+ * the samples file by {@link ValuesStatusCounters} so status charts don't have to read the samples.
+ * <p>
+ * Each window holds {@link #FAMILIES} counts: failures without status, then 1xx to 5xx.
+ */
+public class ValuesStatusSummary
+    implements Serializable
+{
+
+    public static final int FAMILIES = 6;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * start of the first window, epoch milliseconds
+     */
+    private long startTime;
+
+    /**
+     * width of the windows in milliseconds
+     */
+    private long window;
+
+    private long[][] total = new long[0][];
+
+    private Map<String, long[][]> paths = new TreeMap<>();
+
+    public long getStartTime()
+    {
+        return startTime;
+    }
+
+    public void setStartTime( long startTime )
+    {
+        this.startTime = startTime;
+    }
+
+    public ValuesStatusSummary startTime( long startTime )
+    {
+        this.startTime = startTime;
+        return this;
+    }
+
+    public long getWindow()
+    {
+        return window;
+    }
+
+    public void setWindow( long window )
+    {
+        this.window = window;
+    }
+
+    public ValuesStatusSummary window( long window )
+    {
+        this.window = window;
+        return this;
+    }
+
+    public long[][] getTotal()
+    {
+        return total;
+    }
+
+    public void setTotal( long[][] total )
+    {
+        this.total = total;
+    }
+
+    public ValuesStatusSummary total( long[][] total )
+    {
+        this.total = total;
+        return this;
+    }
+
+    public Map<String, long[][]> getPaths()
+    {
+        return paths;
+    }
+
+    public void setPaths( Map<String, long[][]> paths )
+    {
+        this.paths = paths;
+    }
+
+    public ValuesStatusSummary paths( Map<String, long[][]> paths )
+    {
+        this.paths = paths;
+        return this;
+    }
+
+    /**
+     * @param path <code>null</code> for all the paths
+     * @return the counts of the whole run, empty if the path is unknown
+     */
+    public StatusResult getStatusResult( String path )
+    {
+        StatusResult statusResult = new StatusResult();
+        long[][] windows = path == null ? total : paths.get( path );
+        if ( windows != null )
+        {
+            for ( long[] counts : windows )
+            {
+                add( statusResult, counts );
+            }
+        }
+        return statusResult;
+    }
+
+    /**
+     * @param path <code>null</code> for all the paths
+     * @return the counts of the window, empty if the path or the window are unknown
+     */
+    public StatusResult getStatusResult( String path, int window )
+    {
+        StatusResult statusResult = new StatusResult();
+        long[][] windows = path == null ? total : paths.get( path );
+        if ( windows != null && window >= 0 && window < windows.length )
+        {
+            add( statusResult, windows[window] );
+        }
+        return statusResult;
+    }
+
+    private static void add( StatusResult statusResult, long[] counts )
+    {
+        for ( int family = 1; family < FAMILIES; family++ )
+        {
+            statusResult.add( family * 100, counts[family] );
+        }
+    }
+
+    public void write( Path path )
+        throws IOException
+    {
+        OBJECT_MAPPER.writeValue( path.toFile(), this );
+    }
+
+    public static ValuesStatusSummary read( Path path )
+        throws IOException
+    {
+        return OBJECT_MAPPER.readValue( path.toFile(), ValuesStatusSummary.class );
+    }
+}
@@ -0,0 +1,79 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+
+package org.mortbay.jetty.load.generator.jenkins;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * How the ring buffer consumers wait for new samples, from the cheapest in cpu to the lowest latency:
+ * <ul>
+ * <li>{@link #BLOCKING}: lock and condition, producers pay a signal on each publish</li>
+ * <li>{@link #SLEEPING}: spins, yields then parks, no signal for producers</li>
+ * <li>{@link #YIELDING}: spins then yields, burns a core per consumer</li>
+ * <li>{@link #BUSY_SPIN}: spins, only with a dedicated core per consumer</li>
+ * </ul>
+ */
+public enum ValuesWaitStrategy
+{
+    BLOCKING,
+    SLEEPING,
+    YIELDING,
+    BUSY_SPIN;
+
+    public WaitStrategy newWaitStrategy()
+    {
+        switch ( this )
+        {
+            case SLEEPING:
+                return new SleepingWaitStrategy();
+            case YIELDING:
+                return new YieldingWaitStrategy();
+            case BUSY_SPIN:
+                return new BusySpinWaitStrategy();
+            default:
+                return new BlockingWaitStrategy();
+        }
+    }
+
+    /**
+     * @param value name of the strategy, case and separators are ignored (busyspin, busy-spin, BUSY_SPIN)
+     * @return {@link #BLOCKING} if value is empty
+     */
+    public static ValuesWaitStrategy of( String value )
+    {
+        if ( StringUtils.isBlank( value ) )
+        {
+            return BLOCKING;
+        }
+        String name = value.replaceAll( "[-_\\s]", "" );
+        for ( ValuesWaitStrategy strategy : values() )
+        {
+            if ( StringUtils.equalsIgnoreCase( strategy.name().replace( "_", "" ), name ) )
+            {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException( "unknown wait strategy " + value );
+    }
+}
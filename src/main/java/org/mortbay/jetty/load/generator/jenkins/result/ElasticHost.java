@@ -1,6 +1,7 @@
 package org.mortbay.jetty.load.generator.jenkins.result;
 
 import hudson.Extension;
+import hudson.init.Terminator;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
 import hudson.util.FormValidation;
@@ -20,6 +21,11 @@ public class ElasticHost
     extends AbstractDescribableImpl<ElasticHost>
 {
 
+    /**
+     * one long lived store per configured host name, each store keeps its own pool of connections
+     */
+    private static final SharedResources<ElasticResultStore> ELASTIC_RESULT_STORES = new SharedResources<>();
+
     private String elasticHostName, elasticHost, elasticScheme = "http", elasticUsername, elasticPassword;
 
     private int elasticPort;
@@ -130,7 +136,31 @@ public class ElasticHost
         return null;
     }
 
-    // FIXME definitely something better to do as we build httpclient everytime.....
+    /**
+     * @return a lease of the store shared by all the callers using this host, the lease must be closed once
+     * the caller is done with the store, the store itself must not be closed by the callers.
+     */
+    public Lease leaseElasticResultStore()
+    {
+        String name = StringUtils.defaultString( this.getElasticHostName() );
+        // the store is built outside of the map lock, a failed build is thrown and retried by the next lease
+        return new Lease( ELASTIC_RESULT_STORES.lease( name, this::buildElasticResultStore ) );
+    }
+
+    /**
+     * retires the shared stores, the next calls to {@link #leaseElasticResultStore()} build new ones while
+     * the retired stores are closed once their last lease is closed.
+     */
+    @Terminator
+    public static void closeElasticResultStores()
+    {
+        ELASTIC_RESULT_STORES.retireAll();
+    }
+
+    /**
+     * @return a new store with its own http client, to be closed by the caller,
+     * prefer {@link #leaseElasticResultStore()}
+     */
     public ElasticResultStore buildElasticResultStore()
     {
         ElasticResultStore elasticResultStore = new ElasticResultStore();
@@ -145,6 +175,31 @@ public class ElasticHost
     }
 
 
+    /**
+     * A use of a shared store, closing it does not close the store.
+     */
+    public static final class Lease
+        implements AutoCloseable
+    {
+        private final SharedResources.Lease<ElasticResultStore> lease;
+
+        private Lease( SharedResources.Lease<ElasticResultStore> lease )
+        {
+            this.lease = lease;
+        }
+
+        public ElasticResultStore getElasticResultStore()
+        {
+            return lease.get();
+        }
+
+        @Override
+        public void close()
+        {
+            lease.close();
+        }
+    }
+
     @Extension
     public static class DescriptorImpl
         extends Descriptor<ElasticHost>
@@ -72,6 +72,8 @@ public class ElasticHostProjectProperty
         {
             elasticHosts.replaceBy( req.bindJSONToList( ElasticHost.class, formData.get( "elasticHosts" ) ) );
             save();
+            // hosts may have been changed or removed, the queries in flight keep their store until they end
+            ElasticHost.closeElasticResultStores();
             return true;
         }
     }
@@ -17,6 +17,9 @@
 
 package org.mortbay.jetty.load.generator.jenkins.result;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jayway.jsonpath.JsonPath;
 import hudson.model.Actionable;
 import hudson.model.ProminentProjectAction;
@@ -26,12 +29,14 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.text.StrSubstitutor;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
-import org.eclipse.jetty.client.HttpContentResponse;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.mortbay.jetty.load.generator.jenkins.PluginConstants;
 import org.mortbay.jetty.load.generator.jenkins.RunInformations;
+import org.mortbay.jetty.load.generator.listeners.CollectorInformations;
+import org.mortbay.jetty.load.generator.listeners.LoadConfig;
 import org.mortbay.jetty.load.generator.listeners.LoadResult;
+import org.mortbay.jetty.load.generator.listeners.ServerInfo;
 import org.mortbay.jetty.load.generator.store.ElasticResultStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,9 +47,11 @@ import java.io.InputStream;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -60,6 +67,12 @@ public class LoadResultProjectAction
 
     private static final Logger LOGGER = LoggerFactory.getLogger( LoadResultProjectAction.class );
 
+    /**
+     * the projected documents only have some of the fields
+     */
+    private static final ObjectMapper SOURCE_MAPPER =
+        new ObjectMapper().configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false );
+
     private final transient RunList<?> builds;
 
     private final String elasticHostName;
@@ -116,9 +129,10 @@ public class LoadResultProjectAction
     {
         LOGGER.debug( "getJettyVersions" );
 
-        try (ElasticResultStore elasticResultStore = elasticHost.buildElasticResultStore(); //
-             InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream( "/distinctJettyVersion.json" ))
+        try (ElasticHost.Lease lease = elasticHost.leaseElasticResultStore();
+            InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream( "/distinctJettyVersion.json" ))
         {
+            ElasticResultStore elasticResultStore = lease.getElasticResultStore();
             String distinctSearchQuery = IOUtils.toString( inputStream );
 
             String distinctResult = elasticResultStore.search( distinctSearchQuery );
@@ -147,11 +161,8 @@ public class LoadResultProjectAction
 
         try
         {
-            List<RunInformations> runInformations = new ArrayList<>();
-            for (String version:versions){
-                runInformations.addAll(searchRunInformations( version, elasticHost ));
-            }
-            Collections.sort( runInformations, Comparator.comparing( o -> o.getStartTimeStamp() ) );
+            List<RunInformations> runInformations =
+                searchRunInformations( Arrays.asList( versions ), elasticHost, 100 );
             rsp.addHeader( "Content-Type", "application/json" );
             LoadTestResultPublisher.OBJECT_MAPPER.writeValue( rsp.getWriter(), runInformations );
         }
@@ -161,6 +172,111 @@ public class LoadResultProjectAction
         }
     }
 
+    /**
+     * <code>versionStatistics?jettyVersion=v1|v2&amp;since=epochMillis</code> returns the
+     * {@link VersionStatistics} of the versions, computed by elastic
+     */
+    public void doVersionStatistics( StaplerRequest req, StaplerResponse rsp )
+        throws IOException, ServletException
+    {
+        LOGGER.debug( "doVersionStatistics" );
+
+        String[] versions = StringUtils.split( req.getParameter( "jettyVersion" ), '|' );
+        String since = req.getParameter( "since" );
+        ElasticHost elasticHost = ElasticHost.get( elasticHostName );
+
+        try
+        {
+            List<VersionStatistics> versionStatistics = //
+                searchVersionStatistics( versions == null ? Collections.emptyList() : Arrays.asList( versions ), //
+                                         StringUtils.isNumeric( since ) ? Long.parseLong( since ) : 0, //
+                                         elasticHost );
+            rsp.addHeader( "Content-Type", "application/json" );
+            LoadTestResultPublisher.OBJECT_MAPPER.writeValue( rsp.getWriter(), versionStatistics );
+        }
+        catch ( Exception e )
+        {
+            LOGGER.error( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Lets elastic group the runs of the versions per estimated qps and transport and compute the statistics
+     * of their collector informations, only the aggregated values are transferred.
+     * The versions are matched on the <code>serverInfo.jettyVersion.keyword</code> field.
+     * <p>
+     * The estimated qps is computed by a painless script reading <code>_source</code>, so each matching document
+     * is loaded and parsed: <code>loadConfigs</code> is not a nested field so its doc values are flattened per
+     * field and cannot tell which instance number, resource number and rate belong to the loader config.
+     * The version and time filters of the query keep the scripted documents to the requested runs.
+     *
+     * @param sinceTimestamp only the runs started since this epoch millis timestamp
+     * @return the statistics ordered by version, estimated qps and transport
+     */
+    public static List<VersionStatistics> searchVersionStatistics( List<String> jettyVersions, long sinceTimestamp,
+                                                                   ElasticHost elasticHost )
+        throws IOException
+    {
+        if ( jettyVersions.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        try (ElasticHost.Lease lease = elasticHost.leaseElasticResultStore();
+            InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream( "/versionStatistics.json" ))
+        {
+            ElasticResultStore elasticResultStore = lease.getElasticResultStore();
+            String versionStatisticsQuery = IOUtils.toString( inputStream );
+            Map<String, String> map = new HashMap<>( 3 );
+            map.put( "jettyVersions", LoadTestResultPublisher.OBJECT_MAPPER.writeValueAsString( jettyVersions ) );
+            map.put( "since", Long.toString( sinceTimestamp ) );
+            map.put( "versionCount", Integer.toString( jettyVersions.size() ) );
+            versionStatisticsQuery = StrSubstitutor.replace( versionStatisticsQuery, map );
+
+            return mapVersionStatistics( elasticResultStore.search( versionStatisticsQuery ) );
+        }
+    }
+
+    /**
+     * Maps the version, qps and transport buckets of <code>versionStatistics.json</code>.
+     *
+     * @return the statistics ordered by version, estimated qps and transport
+     */
+    static List<VersionStatistics> mapVersionStatistics( String results )
+        throws IOException
+    {
+        JsonNode aggregations = SOURCE_MAPPER.readTree( results ).path( "aggregations" );
+
+        List<VersionStatistics> versionStatistics = new ArrayList<>();
+        for ( JsonNode version : aggregations.path( "version" ).path( "buckets" ) )
+        {
+            for ( JsonNode qps : version.path( "qps" ).path( "buckets" ) )
+            {
+                for ( JsonNode transport : qps.path( "transport" ).path( "buckets" ) )
+                {
+                    Map<String, Double> value90Percentiles = new TreeMap<>();
+                    transport.path( "value90Percentiles" ).path( "values" ).fields() //
+                        .forEachRemaining( entry -> value90Percentiles.put( entry.getKey(), //
+                                                                            entry.getValue().asDouble() ) );
+                    VersionStatistics statistics = new VersionStatistics() //
+                        .jettyVersion( version.path( "key" ).asText() ) //
+                        .estimatedQps( qps.path( "key" ).asInt() ) //
+                        .transport( StringUtils.lowerCase( transport.path( "key" ).asText() ) ) //
+                        .runs( transport.path( "doc_count" ).asLong() ) //
+                        .mean( new VersionStatistics.Stats( transport.path( "mean" ) ) ) //
+                        .value50( new VersionStatistics.Stats( transport.path( "value50" ) ) ) //
+                        .value90( new VersionStatistics.Stats( transport.path( "value90" ) ) ) //
+                        .value90Percentiles( value90Percentiles );
+                    versionStatistics.add( statistics );
+                }
+            }
+        }
+        versionStatistics.sort( Comparator.comparing( VersionStatistics::getJettyVersion ) //
+                                    .thenComparingInt( VersionStatistics::getEstimatedQps ) //
+                                    .thenComparing( VersionStatistics::getTransport ) );
+        return versionStatistics;
+    }
+
     public static List<RunInformations> searchRunInformations( String jettyVersion, ElasticHost elasticHost )
         throws IOException
     {
@@ -171,17 +287,132 @@ public class LoadResultProjectAction
                                                                int maxResult )
         throws IOException
     {
+        return searchRunInformations( Collections.singletonList( jettyVersion ), elasticHost, maxResult );
+    }
 
-        String originalJettyVersion = jettyVersion;
+    /**
+     * Searches the results of several jetty versions with one search per version so a version with many runs
+     * does not starve the others. A search per version rather than <code>top_hits</code> buckets as those are
+     * limited by <code>index.max_inner_result_window</code> (100 by default).
+     * The versions are matched exactly on the <code>serverInfo.jettyVersion.keyword</code> field. Documents of
+     * older indices without this field are matched with the wildcards of {@link #versionWildcard(String)}
+     * and filtered on the client.
+     *
+     * @param maxResult maximum number of results per version, up to <code>index.max_result_window</code>
+     * @return the results of all the versions ordered by start time
+     */
+    public static List<RunInformations> searchRunInformations( List<String> jettyVersions, ElasticHost elasticHost,
+                                                               int maxResult )
+        throws IOException
+    {
+        if ( jettyVersions.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        try (ElasticHost.Lease lease = elasticHost.leaseElasticResultStore();
+            InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream( "/versionResult.json" ))
+        {
+            ElasticResultStore elasticResultStore = lease.getElasticResultStore();
+            String versionResultQuery = IOUtils.toString( inputStream );
+
+            List<RunInformations> runInformations = new ArrayList<>();
+            for ( String jettyVersion : new LinkedHashSet<>( jettyVersions ) )
+            {
+                String results =
+                    elasticResultStore.search( versionResultQuery( versionResultQuery, jettyVersion, maxResult ) );
+                runInformations.addAll( mapRunInformations( results, jettyVersion ) );
+            }
+            runInformations.sort( Comparator.comparing( o -> o.getStartTimeStamp() ) );
+            return runInformations;
+        }
+
+    }
+
+    /**
+     * @param versionResultQuery the content of <code>versionResult.json</code>
+     * @return the search of the last results of the version
+     */
+    static String versionResultQuery( String versionResultQuery, String jettyVersion, int maxResult )
+        throws IOException
+    {
+        Map<String, String> map = new HashMap<>( 3 );
+        map.put( "jettyVersion", LoadTestResultPublisher.OBJECT_MAPPER.writeValueAsString( jettyVersion ) );
+        map.put( "versionWildcard", //
+                 LoadTestResultPublisher.OBJECT_MAPPER.writeValueAsString( versionWildcard( jettyVersion ) ) );
+        map.put( "maxResult", Integer.toString( maxResult ) );
+        return StrSubstitutor.replace( versionResultQuery, map );
+    }
+
+    /**
+     * Maps the hits of a search of <code>versionResult.json</code>, projected with its <code>_source</code>
+     * includes, without building the full {@link LoadResult}s.
+     * The wildcards of the older indices match more than the searched version so the other versions
+     * are filtered out.
+     */
+    static List<RunInformations> mapRunInformations( String results, String jettyVersion )
+        throws IOException
+    {
+        return mapRunInformations( SOURCE_MAPPER.readTree( results ).path( "hits" ) ).stream() //
+            .filter( current -> StringUtils.equalsIgnoreCase( jettyVersion, current.getJettyVersion() ) ) //
+            .collect( Collectors.toList() );
+    }
+
+    private static List<RunInformations> mapRunInformations( JsonNode hits )
+        throws IOException
+    {
+        List<RunInformations> runInformations = new ArrayList<>();
+        for ( JsonNode hit : hits.path( "hits" ) )
+        {
+            JsonNode source = hit.path( "_source" );
+            if ( !source.hasNonNull( "serverInfo" ) || !source.hasNonNull( "collectorInformations" ) )
+            {
+                continue;
+            }
+            ServerInfo serverInfo = SOURCE_MAPPER.treeToValue( source.get( "serverInfo" ), ServerInfo.class );
+            CollectorInformations collectorInformations =
+                SOURCE_MAPPER.treeToValue( source.get( "collectorInformations" ), CollectorInformations.class );
+            String transport = StringUtils.lowerCase( source.path( "transport" ).asText( null ) );
+            runInformations.add( new RunInformations( serverInfo.getJettyVersion() + ":" + serverInfo.getGitHash(), //
+                                                      collectorInformations, transport ) //
+                                     .jettyVersion( serverInfo.getJettyVersion() ) //
+                                     .estimatedQps( estimatedQps( source.path( "loadConfigs" ) ) ) //
+                                     .serverInfo( serverInfo ) );
+        }
+        return runInformations;
+    }
 
+    /**
+     * @return the estimated qps of the loader config, see {@link LoadTestResultBuildAction#estimatedQps(LoadConfig)}
+     */
+    private static int estimatedQps( JsonNode loadConfigs )
+    {
+        for ( JsonNode loadConfig : loadConfigs )
+        {
+            if ( LoadConfig.Type.LOADER.name().equals( loadConfig.path( "type" ).asText() ) )
+            {
+                return loadConfig.path( "instanceNumber" ).asInt() //
+                    * loadConfig.path( "resourceNumber" ).asInt() //
+                    * loadConfig.path( "resourceRate" ).asInt();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the wildcard matching the version without its qualifiers, i.e. <code>9.4.9*</code>
+     * for <code>9.4.9.v20180320</code> or <code>9.4.10-SNAPSHOT</code>
+     */
+    static String versionWildcard( String jettyVersion )
+    {
         // jettyVersion 9.4.9*
         //in case jettyVersion is 9.4.9.v20180320 we need to replace with 9.4.9*
         if ( StringUtils.contains( jettyVersion, 'v' ) )
         {
             jettyVersion = StringUtils.substringBeforeLast( jettyVersion, ".v" );
         }
-        // FIXME investigate elastic but query such 9.4.10-SNAPSHOT doesn't work...
-        // so using 9.4.10* then filter response back....
+        // the analyzed field splits 9.4.10-SNAPSHOT into tokens so a query on it doesn't work...
+        // so using 9.4.10* then filter response back, only needed without the keyword field
         if ( StringUtils.contains( jettyVersion, "-SNAPSHOT" ) )
         {
             jettyVersion = StringUtils.substringBeforeLast( jettyVersion, "-SNAPSHOT" );
@@ -200,39 +431,7 @@ public class LoadResultProjectAction
             }
         }
 
-        jettyVersion = versionQuery.toString() + "*";
-
-        try (ElasticResultStore elasticResultStore = elasticHost.buildElasticResultStore(); //
-             InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream( "/versionResult.json" ))
-        {
-            String versionResultQuery = IOUtils.toString( inputStream );
-            Map<String, String> map = new HashMap<>( 1 );
-            map.put( "jettyVersion", jettyVersion );
-            map.put( "maxResult", Integer.toString( maxResult ) );
-            versionResultQuery = StrSubstitutor.replace( versionResultQuery, map );
-
-            String results = elasticResultStore.search( versionResultQuery );
-
-            List<LoadResult> loadResults =
-                ElasticResultStore.map( new HttpContentResponse( null, results.getBytes(), null, null ) );
-
-            List<RunInformations> runInformations = //
-                loadResults.stream() //
-                    .filter( loadResult -> StringUtils.equalsIgnoreCase( originalJettyVersion, //
-                                                                         loadResult.getServerInfo().getJettyVersion() ) ) //
-                    .map( loadResult -> new RunInformations(
-                        loadResult.getServerInfo().getJettyVersion() + ":" + loadResult.getServerInfo().getGitHash(), //
-                        loadResult.getCollectorInformations(), StringUtils.lowerCase(loadResult.getTransport())) //
-                        .jettyVersion( loadResult.getServerInfo().getJettyVersion() ) //
-                        .estimatedQps( LoadTestResultBuildAction.estimatedQps(
-                            LoadTestResultBuildAction.getLoaderConfig( loadResult ) ) ) //
-                        .serverInfo( loadResult.getServerInfo() ) ) //
-                    .collect( Collectors.toList() );
-
-            Collections.sort( runInformations, Comparator.comparing( o -> o.getStartTimeStamp() ) );
-            return runInformations;
-        }
-
+        return versionQuery.toString() + "*";
     }
 
 
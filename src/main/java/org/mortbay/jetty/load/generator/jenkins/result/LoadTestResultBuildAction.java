@@ -124,8 +124,9 @@ public class LoadTestResultBuildAction
         if ( loadResults == null )
         {
             ElasticHost elasticHost = ElasticHost.get( elasticHostName );
-            try (ElasticResultStore elasticResultStore = elasticHost.buildElasticResultStore())
+            try (ElasticHost.Lease lease = elasticHost.leaseElasticResultStore())
             {
+                ElasticResultStore elasticResultStore = lease.getElasticResultStore();
                 this.loadResults = elasticResultStore.searchResultsByExternalId( buildId );
                 this.loadResultsJson = LoadTestResultPublisher.OBJECT_MAPPER.writeValueAsString( loadResults );
             }
@@ -89,6 +89,7 @@ public class LoadTestResultPublisher
     {
         if ( elasticHost != null && StringUtils.isNotEmpty( elasticHost.getElasticHost() ) )
         {
+            // a private store, the shared one may be closed while this publisher keeps it
             this.resultStore = elasticHost.buildElasticResultStore();
         }
         else
@@ -169,8 +170,12 @@ public class LoadTestResultPublisher
         }
 
         ElasticHost elasticHost = ElasticHostProjectProperty.DESCRIPTOR.getElasticHostByName( elasticHostName );
-        ElasticResultStore elasticResultStore = elasticHost.buildElasticResultStore();
-        List<LoadResult> loadResults = elasticResultStore.searchResultsByExternalId( run.getId());//"547" );// run.getId() );
+        List<LoadResult> loadResults;
+        try (ElasticHost.Lease lease = elasticHost.leaseElasticResultStore())
+        {
+            ElasticResultStore elasticResultStore = lease.getElasticResultStore();
+            loadResults = elasticResultStore.searchResultsByExternalId( run.getId() );
+        }
 
         try
         {
@@ -0,0 +1,169 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins.result;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Long lived resources shared by name, a resource is closed once it has been retired and its last lease closed.
+ */
+class SharedResources<T extends AutoCloseable>
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( SharedResources.class );
+
+    private final ConcurrentMap<String, Shared<T>> resources = new ConcurrentHashMap<>();
+
+    /**
+     * @param factory called outside of any lock when no resource is shared under this name, its exceptions are
+     * thrown to the caller and the next lease calls it again
+     * @return a lease of the resource shared under this name, to be closed once the caller is done with it
+     */
+    Lease<T> lease( String name, Supplier<T> factory )
+    {
+        while ( true )
+        {
+            Shared<T> shared = resources.get( name );
+            if ( shared == null )
+            {
+                Shared<T> built = new Shared<>( name, factory.get() );
+                shared = resources.putIfAbsent( name, built );
+                if ( shared == null )
+                {
+                    shared = built;
+                }
+                else
+                {
+                    // another caller shared its resource first
+                    built.release();
+                }
+            }
+            if ( shared.acquire() )
+            {
+                return new Lease<>( shared );
+            }
+            // retired in the meantime, make room for a new one
+            resources.remove( name, shared );
+        }
+    }
+
+    /**
+     * retires the shared resources, the next leases get new ones while the retired resources are closed
+     * once their last lease is closed
+     */
+    void retireAll()
+    {
+        for ( String name : resources.keySet() )
+        {
+            Shared<T> shared = resources.remove( name );
+            if ( shared != null )
+            {
+                shared.release();
+            }
+        }
+    }
+
+    /**
+     * A use of a shared resource, closing it does not close the resource.
+     */
+    static final class Lease<T extends AutoCloseable>
+        implements AutoCloseable
+    {
+        private final Shared<T> shared;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease( Shared<T> shared )
+        {
+            this.shared = shared;
+        }
+
+        T get()
+        {
+            return shared.resource;
+        }
+
+        @Override
+        public void close()
+        {
+            if ( closed.compareAndSet( false, true ) )
+            {
+                shared.release();
+            }
+        }
+    }
+
+    private static final class Shared<T extends AutoCloseable>
+    {
+        private final String name;
+
+        private final T resource;
+
+        /**
+         * the opened leases plus one held by {@link #resources} until the resource is retired
+         */
+        private final AtomicInteger references = new AtomicInteger( 1 );
+
+        private Shared( String name, T resource )
+        {
+            this.name = name;
+            this.resource = resource;
+        }
+
+        /**
+         * @return <code>false</code> if the resource has already been closed
+         */
+        private boolean acquire()
+        {
+            int current;
+            do
+            {
+                current = references.get();
+                if ( current == 0 )
+                {
+                    return false;
+                }
+            }
+            while ( !references.compareAndSet( current, current + 1 ) );
+            return true;
+        }
+
+        private void release()
+        {
+            if ( references.decrementAndGet() == 0 )
+            {
+                try
+                {
+                    resource.close();
+                }
+                catch ( Exception e )
+                {
+                    LOGGER.warn( "cannot close shared resource " + name + ": " + e.getMessage(), e );
+                }
+            }
+        }
+    }
+
+}
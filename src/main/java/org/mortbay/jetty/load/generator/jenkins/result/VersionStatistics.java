@@ -0,0 +1,262 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2018 Webtide LLC, Olivier Lamy
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+
+package org.mortbay.jetty.load.generator.jenkins.result;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics computed by elastic over the runs of a jetty version with the same estimated qps and transport,
+ * see {@link LoadResultProjectAction#searchVersionStatistics(java.util.List, long, ElasticHost)}.
+ * Values are the collector informations of the runs.
+ */
+public class VersionStatistics
+{
+    private String jettyVersion;
+
+    private int estimatedQps;
+
+    private String transport;
+
+    private long runs;
+
+    private Stats mean;
+
+    private Stats value50;
+
+    private Stats value90;
+
+    /**
+     * percentiles of the value90 of the runs, keyed by percent
+     */
+    private Map<String, Double> value90Percentiles = new TreeMap<>();
+
+    public String getJettyVersion()
+    {
+        return jettyVersion;
+    }
+
+    public void setJettyVersion( String jettyVersion )
+    {
+        this.jettyVersion = jettyVersion;
+    }
+
+    public VersionStatistics jettyVersion( String jettyVersion )
+    {
+        this.jettyVersion = jettyVersion;
+        return this;
+    }
+
+    public int getEstimatedQps()
+    {
+        return estimatedQps;
+    }
+
+    public void setEstimatedQps( int estimatedQps )
+    {
+        this.estimatedQps = estimatedQps;
+    }
+
+    public VersionStatistics estimatedQps( int estimatedQps )
+    {
+        this.estimatedQps = estimatedQps;
+        return this;
+    }
+
+    public String getTransport()
+    {
+        return transport;
+    }
+
+    public void setTransport( String transport )
+    {
+        this.transport = transport;
+    }
+
+    public VersionStatistics transport( String transport )
+    {
+        this.transport = transport;
+        return this;
+    }
+
+    public long getRuns()
+    {
+        return runs;
+    }
+
+    public void setRuns( long runs )
+    {
+        this.runs = runs;
+    }
+
+    public VersionStatistics runs( long runs )
+    {
+        this.runs = runs;
+        return this;
+    }
+
+    public Stats getMean()
+    {
+        return mean;
+    }
+
+    public void setMean( Stats mean )
+    {
+        this.mean = mean;
+    }
+
+    public VersionStatistics mean( Stats mean )
+    {
+        this.mean = mean;
+        return this;
+    }
+
+    public Stats getValue50()
+    {
+        return value50;
+    }
+
+    public void setValue50( Stats value50 )
+    {
+        this.value50 = value50;
+    }
+
+    public VersionStatistics value50( Stats value50 )
+    {
+        this.value50 = value50;
+        return this;
+    }
+
+    public Stats getValue90()
+    {
+        return value90;
+    }
+
+    public void setValue90( Stats value90 )
+    {
+        this.value90 = value90;
+    }
+
+    public VersionStatistics value90( Stats value90 )
+    {
+        this.value90 = value90;
+        return this;
+    }
+
+    public Map<String, Double> getValue90Percentiles()
+    {
+        return value90Percentiles;
+    }
+
+    public void setValue90Percentiles( Map<String, Double> value90Percentiles )
+    {
+        this.value90Percentiles = value90Percentiles;
+    }
+
+    public VersionStatistics value90Percentiles( Map<String, Double> value90Percentiles )
+    {
+        this.value90Percentiles = value90Percentiles;
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "VersionStatistics{" + "jettyVersion='" + jettyVersion + '\'' + ", estimatedQps=" + estimatedQps
+            + ", transport='" + transport + '\'' + ", runs=" + runs + ", mean=" + mean + ", value50=" + value50
+            + ", value90=" + value90 + ", value90Percentiles=" + value90Percentiles + '}';
+    }
+
+    /**
+     * Result of an elastic stats aggregation
+     */
+    public static class Stats
+    {
+        private long count;
+
+        private double min;
+
+        private double max;
+
+        private double avg;
+
+        public Stats()
+        {
+            // no op
+        }
+
+        /**
+         * @param stats the json of a stats aggregation
+         */
+        public Stats( JsonNode stats )
+        {
+            this.count = stats.path( "count" ).asLong();
+            this.min = stats.path( "min" ).asDouble();
+            this.max = stats.path( "max" ).asDouble();
+            this.avg = stats.path( "avg" ).asDouble();
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public void setCount( long count )
+        {
+            this.count = count;
+        }
+
+        public double getMin()
+        {
+            return min;
+        }
+
+        public void setMin( double min )
+        {
+            this.min = min;
+        }
+
+        public double getMax()
+        {
+            return max;
+        }
+
+        public void setMax( double max )
+        {
+            this.max = max;
+        }
+
+        public double getAvg()
+        {
+            return avg;
+        }
+
+        public void setAvg( double avg )
+        {
+            this.avg = avg;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Stats{" + "count=" + count + ", min=" + min + ", max=" + max + ", avg=" + avg + '}';
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ */
+public class BinaryValuesRecordWriterTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    static List<Values> sampleValues( int number, ValuesDictionary dictionary )
+    {
+        List<Values> values = new ArrayList<>( number );
+        long start = System.nanoTime();
+        for ( int i = 0; i < number; i++ )
+        {
+            String method = i % 5 == 0 ? "POST" : "GET";
+            String path = "/jetty-" + ( i % 7 ) + "/index.html";
+            values.add( new Values() //
+                            .eventTimestamp( start + i * 1000 ) //
+                            .method( method ) //
+                            .methodId( dictionary.methodId( method ) ) //
+                            .path( path ) //
+                            .pathId( dictionary.pathId( path ) ) //
+                            .status( i % 11 == 0 ? 500 : 200 ) //
+                            .size( 1024 + i ) //
+                            .responseTime( start + i * 1000 + 3_000_000 + i ) //
+                            .latencyTime( start + i * 1000 + 1_000_000 + i ) );
+        }
+        return values;
+    }
+
+    static List<Values> readBinary( ByteBuffer buffer, ValuesDictionary dictionary )
+    {
+        BinaryValuesFormat.readHeader( buffer );
+        List<Values> read = new ArrayList<>();
+        while ( buffer.hasRemaining() )
+        {
+            byte type = buffer.get();
+            if ( type == BinaryValuesFormat.DICTIONARY )
+            {
+                BinaryValuesFormat.readDictionaryEntry( buffer, dictionary );
+            }
+            else
+            {
+                Assert.assertEquals( BinaryValuesFormat.SAMPLE, type );
+                read.add( BinaryValuesFormat.readSample( buffer, new Values(), dictionary ) );
+            }
+        }
+        return read;
+    }
+
+    @Test
+    public void binary_roundtrip()
+        throws Exception
+    {
+        ValuesDictionary runDictionary = new ValuesDictionary();
+        List<Values> values = sampleValues( 10_000, runDictionary );
+        Path text = temporaryFolder.newFile( "values.txt" ).toPath();
+        Path binary = temporaryFolder.newFile( "values.bin" ).toPath();
+        try (ValuesRecordWriter textWriter = ValuesFormat.TEXT.newRecordWriter( text, runDictionary );
+             ValuesRecordWriter binaryWriter = ValuesFormat.BINARY.newRecordWriter( binary, runDictionary ))
+        {
+            for ( Values value : values )
+            {
+                textWriter.write( value );
+                binaryWriter.write( value );
+            }
+        }
+
+        Values first = values.get( 0 );
+        Assert.assertEquals( first.getEventTimestamp() + "|POST|/jetty-0/index.html|500|1024|" //
+                                 + first.getResponseTime() + "|" + first.getLatencyTime(), //
+                             Files.readAllLines( text ).get( 0 ) );
+        Assert.assertTrue( "binary file should be much smaller than text", //
+                           Files.size( binary ) * 3 < Files.size( text ) * 2 );
+
+        ValuesDictionary dictionary = new ValuesDictionary();
+        List<Values> read = readBinary( ByteBuffer.wrap( Files.readAllBytes( binary ) ), dictionary );
+
+        Assert.assertEquals( values.size(), read.size() );
+        Assert.assertEquals( 7, dictionary.getPathCount() );
+        Assert.assertEquals( 2, dictionary.getMethodCount() );
+        for ( int i = 0; i < values.size(); i++ )
+        {
+            Assert.assertEquals( values.get( i ).toString(), read.get( i ).toString() );
+        }
+    }
+
+    @Test
+    public void null_distinct_from_empty()
+        throws Exception
+    {
+        ValuesDictionary runDictionary = new ValuesDictionary();
+        Assert.assertNotEquals( runDictionary.pathId( null ), runDictionary.pathId( "" ) );
+        Assert.assertEquals( runDictionary.pathId( null ), runDictionary.findPathId( null ) );
+        List<Values> values = new ArrayList<>();
+        for ( String path : new String[]{ null, "", "/index.html", null } )
+        {
+            values.add( new Values().eventTimestamp( values.size() ) //
+                            .methodId( runDictionary.methodId( path == null ? null : "GET" ) ) //
+                            .pathId( runDictionary.pathId( path ) ) //
+                            .status( 200 ) );
+        }
+        Path text = temporaryFolder.newFile( "values.txt" ).toPath();
+        Path binary = temporaryFolder.newFile( "values.bin" ).toPath();
+        try (ValuesRecordWriter textWriter = ValuesFormat.TEXT.newRecordWriter( text, runDictionary );
+             ValuesRecordWriter binaryWriter = ValuesFormat.BINARY.newRecordWriter( binary, runDictionary ))
+        {
+            for ( Values value : values )
+            {
+                textWriter.write( value );
+                binaryWriter.write( value );
+            }
+        }
+
+        List<Values> binaryRead = readBinary( ByteBuffer.wrap( Files.readAllBytes( binary ) ), new ValuesDictionary() );
+        List<Values> textRead = new ArrayList<>();
+        try (ValuesRecordReader reader = new TextValuesRecordReader( text, new ValuesDictionary() ))
+        {
+            Values value = new Values();
+            while ( reader.read( value ) )
+            {
+                textRead.add( new Values().copy( value ) );
+            }
+        }
+        for ( List<Values> read : Arrays.asList( binaryRead, textRead ) )
+        {
+            Assert.assertEquals( 4, read.size() );
+            Assert.assertNull( read.get( 0 ).getPath() );
+            Assert.assertNull( read.get( 0 ).getMethod() );
+            Assert.assertEquals( "", read.get( 1 ).getPath() );
+            Assert.assertEquals( "/index.html", read.get( 2 ).getPath() );
+            Assert.assertNull( read.get( 3 ).getPath() );
+            Assert.assertEquals( read.get( 0 ).getPathId(), read.get( 3 ).getPathId() );
+        }
+    }
+
+    @Test
+    public void gzip_roundtrip()
+        throws Exception
+    {
+        ValuesDictionary runDictionary = new ValuesDictionary();
+        List<Values> values = sampleValues( 10_000, runDictionary );
+        Path binary = temporaryFolder.newFile( "values.bin" ).toPath();
+        Path compressed = temporaryFolder.newFile( "values.bin.gz" ).toPath();
+        try (ValuesRecordWriter binaryWriter = ValuesFormat.BINARY.newRecordWriter( binary, runDictionary );
+             ValuesRecordWriter compressedWriter = //
+                 ValuesFormat.BINARY.newRecordWriter( compressed, runDictionary, ValuesCompression.GZIP ))
+        {
+            for ( Values value : values )
+            {
+                binaryWriter.write( value );
+                compressedWriter.write( value );
+            }
+        }
+
+        Assert.assertTrue( ValuesCompression.isCompressed( compressed ) );
+        Assert.assertFalse( ValuesCompression.isCompressed( binary ) );
+        Assert.assertTrue( Files.size( compressed ) < Files.size( binary ) );
+
+        byte[] content;
+        try (InputStream inputStream = ValuesCompression.newInputStream( compressed ))
+        {
+            content = IOUtils.toByteArray( inputStream );
+        }
+        Assert.assertArrayEquals( Files.readAllBytes( binary ), content );
+        Assert.assertEquals( values.size(), readBinary( ByteBuffer.wrap( content ), new ValuesDictionary() ).size() );
+    }
+
+    @Test
+    public void long_values_truncated()
+        throws Exception
+    {
+        int max = BinaryValuesFormat.MAX_VALUE_LENGTH;
+        // a 3 bytes character straddling the limit
+        String straddling = repeat( 'a', max - 1 ) + "\u20ac";
+        List<String> paths =
+            Arrays.asList( repeat( 'a', max - 1 ), repeat( 'b', max ), repeat( 'c', max + 1 ), repeat( 'd', 70_000 ),
+                           straddling, "/index.html" );
+        ValuesDictionary runDictionary = new ValuesDictionary();
+        Path binary = temporaryFolder.newFile( "values.bin" ).toPath();
+        try (ValuesRecordWriter binaryWriter = ValuesFormat.BINARY.newRecordWriter( binary, runDictionary ))
+        {
+            for ( String path : paths )
+            {
+                binaryWriter.write( new Values().eventTimestamp( 1 ) //
+                                        .methodId( runDictionary.methodId( "GET" ) ) //
+                                        .pathId( runDictionary.pathId( path ) ) //
+                                        .status( 200 ) );
+            }
+        }
+
+        List<Values> read = readBinary( ByteBuffer.wrap( Files.readAllBytes( binary ) ), new ValuesDictionary() );
+
+        Assert.assertEquals( paths.size(), read.size() );
+        Assert.assertEquals( paths.get( 0 ), read.get( 0 ).getPath() );
+        Assert.assertEquals( paths.get( 1 ), read.get( 1 ).getPath() );
+        Assert.assertEquals( repeat( 'c', max ), read.get( 2 ).getPath() );
+        Assert.assertEquals( repeat( 'd', max ), read.get( 3 ).getPath() );
+        Assert.assertEquals( repeat( 'a', max - 1 ), read.get( 4 ).getPath() );
+        Assert.assertEquals( "/index.html", read.get( 5 ).getPath() );
+        // truncated values share their id
+        Assert.assertEquals( read.get( 0 ).getPathId(), read.get( 4 ).getPathId() );
+        Assert.assertEquals( runDictionary.pathId( paths.get( 0 ) ), runDictionary.pathId( straddling ) );
+    }
+
+    private static String repeat( char c, int count )
+    {
+        char[] chars = new char[count];
+        Arrays.fill( chars, c );
+        return new String( chars );
+    }
+
+}
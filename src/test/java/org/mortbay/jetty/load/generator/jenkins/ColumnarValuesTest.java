@@ -0,0 +1,74 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ */
+public class ColumnarValuesTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void columns_from_segments()
+        throws Exception
+    {
+        ValuesDictionary runDictionary = new ValuesDictionary();
+        List<Values> values = BinaryValuesRecordWriterTest.sampleValues( 7_000, runDictionary );
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values" );
+        // first half in text, second half in binary segments
+        try (ValuesRecordWriter text = ValuesFormat.TEXT.newRecordWriter( ValuesFormat.segmentPath( path, 0 ),
+                                                                          runDictionary );
+             ValuesRecordWriter binary = ValuesFormat.BINARY.newRecordWriter( ValuesFormat.segmentPath( path, 1 ),
+                                                                              runDictionary ))
+        {
+            for ( int i = 0; i < values.size(); i++ )
+            {
+                ( i < 3_500 ? text : binary ).write( values.get( i ) );
+            }
+        }
+        Assert.assertEquals( Arrays.asList( ValuesFormat.segmentPath( path, 0 ), ValuesFormat.segmentPath( path, 1 ) ),
+                             ValuesFormat.samplesFiles( path ) );
+
+        Path directory = temporaryFolder.getRoot().toPath().resolve( "values.columns" );
+        Assert.assertEquals( 7_000, ColumnarValues.write( ValuesFormat.samplesFiles( path ), directory ) );
+
+        ColumnarValues columns = ColumnarValues.open( directory );
+        Assert.assertEquals( 7_000, columns.size() );
+        Assert.assertEquals( 7, columns.getPaths().size() );
+        Values last = values.get( 6_999 );
+        Assert.assertEquals( last.getPath(), columns.getPath( 6_999 ) );
+        Assert.assertEquals( last.getEventTimestamp(), columns.getEventTimestamp( 6_999 ) );
+        Assert.assertEquals( last.getStatus(), columns.getStatus( 6_999 ) );
+        Assert.assertEquals( last.getSize(), columns.getSize( 6_999 ) );
+        Assert.assertEquals( last.getLatencyTime(), columns.getLatencyTime( 6_999 ) );
+
+        StatusResult statusResult = columns.statusResult( null );
+        Assert.assertEquals( 637, statusResult.get5xx() );
+        Assert.assertEquals( 7_000 - 637, statusResult.get2xx() );
+        Assert.assertEquals( 1_000, columns.statusResult( "/jetty-2/index.html" ).get2xx()
+            + columns.statusResult( "/jetty-2/index.html" ).get5xx() );
+        Assert.assertEquals( 0, columns.statusResult( "/unknown" ).get2xx() );
+
+        Histogram histogram = columns.responseTimeHistogram( "/jetty-4/index.html" );
+        Assert.assertEquals( 1_000, histogram.getTotalCount() );
+        Assert.assertEquals( 3_007_000, histogram.getValueAtPercentile( 100 ), 3_007 );
+
+        // samples are 1 micro second apart
+        ColumnarValues.Buckets buckets = columns.buckets( null, 1_000_000 );
+        Assert.assertEquals( 7, buckets.size() );
+        Assert.assertEquals( 1_000, buckets.getCount( 0 ) );
+        Assert.assertEquals( 3_000_499, buckets.getMeanResponseTime( 0 ) );
+    }
+
+}
@@ -1,14 +1,12 @@
 package org.mortbay.jetty.load.generator.jenkins;
 
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.mortbay.jetty.load.generator.jenkins.result.ElasticHost;
 import org.mortbay.jetty.load.generator.jenkins.result.LoadResultProjectAction;
+import org.mortbay.jetty.load.generator.jenkins.result.VersionStatistics;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -37,52 +35,19 @@ public class ManualExtract
     public static void printVersionStats( String version, ElasticHost elasticHost, long sinceTimestamp )
         throws Exception
     {
-        List<RunInformations> runInformations = getResultsForVersion( version, elasticHost, sinceTimestamp, 1000 );
-
-        Map<Integer, List<RunInformations>> perQps = new HashMap<>();
-        runInformations.stream().forEach( informations -> {
-            int qps = informations.getEstimatedQps();
-            List<RunInformations> informationsList = perQps.get( qps );
-            if ( informationsList == null )
-            {
-                informationsList = new ArrayList<>();
-                perQps.put( qps, informationsList );
-            }
-            informationsList.add( informations );
+        // aggregated by elastic per estimated qps and transport
+        List<VersionStatistics> versionStatistics = LoadResultProjectAction.searchVersionStatistics( //
+            Collections.singletonList( version ), sinceTimestamp, elasticHost );
+
+        versionStatistics.forEach( statistics -> {
+            System.out.println( version + ", qps " + statistics.getEstimatedQps() //
+                                    + ", transport " + statistics.getTransport() + " :" );
+            System.out.println( String.format( "mean: %.3f, value50 mean: %.3f, value90 mean: %.3f, runs: %d", //
+                                               statistics.getMean().getAvg(), //
+                                               statistics.getValue50().getAvg(), //
+                                               statistics.getValue90().getAvg(), //
+                                               statistics.getRuns() ) );
         } );
-        perQps.entrySet().stream().sorted( Comparator.comparingInt( value -> value.getKey() ) ) //
-            .forEach( qpsRunsList -> {
-                int qps = qpsRunsList.getKey();
-                List<RunInformations> runInformationsList = qpsRunsList.getValue();
-                // display only significant results
-                //if ( runInformationsList.size() > 5 ) // && Arrays.asList(27900, 45000).contains( qps ) )
-                //{
-                    runInformations.sort( Comparator.comparing( RunInformations::getEndTimeStamp ).reversed() );
-                    SummaryStatistics statsMean = new SummaryStatistics();
-                    SummaryStatistics statsValue90 = new SummaryStatistics();
-                    SummaryStatistics statsValue50 = new SummaryStatistics();
-                    int maxResults = 50;
-                    runInformationsList = runInformationsList.subList( 0, runInformationsList.size() >= maxResults
-                        ? maxResults
-                        : runInformationsList.size() );
-                    runInformationsList.stream().forEach( runInformation -> {
-                        statsMean.addValue( runInformation.getMean() );
-                        statsValue90.addValue( runInformation.getValue90() );
-                        statsValue50.addValue( runInformation.getValue50() );
-                    } );
-
-                    System.out.println( version + ", qps " + qps + " :" );
-                    System.out.println( "mean: " + String.format( "%.3f", statsMean.getMean() ) //
-                                            + ", value50 mean: " + String.format( "%.3f", statsValue50.getMean() ) //
-                                            + ", value90 mean: " + String.format( "%.3f", statsValue90.getMean() ) //
-                                            + ", runs: " + runInformationsList.size() );
-//                }
-//                else
-//                {
-//                    //System.out.println( "ignore qps:" + qps );
-//                }
-            } );
-
     }
 
 
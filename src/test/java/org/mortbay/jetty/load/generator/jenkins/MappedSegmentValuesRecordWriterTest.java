@@ -0,0 +1,166 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ */
+public class MappedSegmentValuesRecordWriterTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * reads each segment on its own until the end marker
+     */
+    static List<Values> readSegments( Path path )
+        throws Exception
+    {
+        List<Values> read = new ArrayList<>();
+        for ( int i = 0; Files.exists( ValuesFormat.segmentPath( path, i ) ); i++ )
+        {
+            ByteBuffer buffer =
+                ByteBuffer.wrap( Files.readAllBytes( ValuesFormat.segmentPath( path, i ) ) );
+            BinaryValuesFormat.readHeader( buffer );
+            ValuesDictionary dictionary = new ValuesDictionary();
+            byte type;
+            while ( buffer.hasRemaining() && ( type = buffer.get() ) != BinaryValuesFormat.END )
+            {
+                if ( type == BinaryValuesFormat.DICTIONARY )
+                {
+                    BinaryValuesFormat.readDictionaryEntry( buffer, dictionary );
+                }
+                else
+                {
+                    read.add( BinaryValuesFormat.readSample( buffer, new Values(), dictionary ) );
+                }
+            }
+        }
+        return read;
+    }
+
+    @Test
+    public void segments_rollover()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        List<Values> values = BinaryValuesRecordWriterTest.sampleValues( 10_000, dictionary );
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.bin" );
+        int segmentSize = MappedSegmentValuesRecordWriter.MIN_SEGMENT_SIZE;
+        try (MappedSegmentValuesRecordWriter writer = //
+                 new MappedSegmentValuesRecordWriter( path, dictionary, segmentSize, true ))
+        {
+            for ( Values value : values )
+            {
+                writer.write( value );
+            }
+            Assert.assertTrue( writer.getSegmentIndex() > 1 );
+        }
+
+        List<Values> read = readSegments( path );
+        Assert.assertEquals( values.size(), read.size() );
+        for ( int i = 0; i < values.size(); i++ )
+        {
+            Assert.assertEquals( values.get( i ).toString(), read.get( i ).toString() );
+        }
+    }
+
+    @Test
+    public void new_paths_across_segment_boundary()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        List<Values> values = new ArrayList<>();
+        long start = System.nanoTime();
+        for ( int i = 0; i < 2_000; i++ )
+        {
+            // long paths so the dictionary rewritten at the start of each segment weighs
+            String path = "/" + String.format( "%0200d", i / 10 );
+            values.add( new Values() //
+                            .eventTimestamp( start + i ) //
+                            .method( "GET" ) //
+                            .methodId( dictionary.methodId( "GET" ) ) //
+                            .path( path ) //
+                            .pathId( dictionary.pathId( path ) ) //
+                            .status( 200 ) //
+                            .responseTime( start + i + 1_000_000 ) );
+        }
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.bin" );
+        long writtenBytes;
+        int segmentSize = MappedSegmentValuesRecordWriter.MIN_SEGMENT_SIZE;
+        try (MappedSegmentValuesRecordWriter writer = //
+                 new MappedSegmentValuesRecordWriter( path, dictionary, segmentSize, false ))
+        {
+            for ( Values value : values )
+            {
+                writer.write( value );
+            }
+            Assert.assertTrue( writer.getSegmentIndex() > 1 );
+            writtenBytes = writer.getWrittenBytes();
+        }
+
+        List<Values> read = readSegments( path );
+        Assert.assertEquals( values.size(), read.size() );
+        for ( int i = 0; i < values.size(); i++ )
+        {
+            Assert.assertEquals( values.get( i ).getPath(), read.get( i ).getPath() );
+        }
+        // the dictionary entries written again at the start of each segment are counted
+        long recordsBytes = 0;
+        for ( int i = 0; Files.exists( ValuesFormat.segmentPath( path, i ) ); i++ )
+        {
+            ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( ValuesFormat.segmentPath( path, i ) ) );
+            BinaryValuesFormat.readHeader( buffer );
+            ValuesDictionary segmentDictionary = new ValuesDictionary();
+            int recordsStart = buffer.position();
+            int recordsEnd = recordsStart;
+            byte type;
+            while ( buffer.hasRemaining() && ( type = buffer.get() ) != BinaryValuesFormat.END )
+            {
+                if ( type == BinaryValuesFormat.DICTIONARY )
+                {
+                    BinaryValuesFormat.readDictionaryEntry( buffer, segmentDictionary );
+                }
+                else
+                {
+                    BinaryValuesFormat.readSample( buffer, new Values(), segmentDictionary );
+                }
+                recordsEnd = buffer.position();
+            }
+            recordsBytes += recordsEnd - recordsStart;
+        }
+        Assert.assertEquals( recordsBytes, writtenBytes );
+    }
+
+    @Test
+    public void readable_without_close()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        List<Values> values = BinaryValuesRecordWriterTest.sampleValues( 100, dictionary );
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.bin" );
+        MappedSegmentValuesRecordWriter writer =
+            new MappedSegmentValuesRecordWriter( path, dictionary, MappedSegmentValuesRecordWriter.MIN_SEGMENT_SIZE,
+                                                 false );
+        for ( Values value : values )
+        {
+            writer.write( value );
+        }
+        // the segment is not truncated but the zero filled end reads as the end of data
+        Assert.assertEquals( MappedSegmentValuesRecordWriter.MIN_SEGMENT_SIZE,
+                             Files.size( ValuesFormat.segmentPath( path, 0 ) ) );
+        Assert.assertEquals( values.size(), readSegments( path ).size() );
+        writer.close();
+    }
+
+}
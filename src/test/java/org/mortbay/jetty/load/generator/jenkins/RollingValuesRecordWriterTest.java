@@ -0,0 +1,103 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ *
+ */
+public class RollingValuesRecordWriterTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void roll_by_size()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        List<Values> values = BinaryValuesRecordWriterTest.sampleValues( 10_000, dictionary );
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.bin" );
+        try (RollingValuesRecordWriter writer = //
+                 new RollingValuesRecordWriter( path, segment -> ValuesFormat.BINARY.newRecordWriter( segment,
+                                                                                                      dictionary ),
+                                                100_000, 0 ))
+        {
+            for ( Values value : values )
+            {
+                writer.write( value );
+            }
+        }
+
+        List<ValuesSegmentIndex.Segment> segments = ValuesSegmentIndex.read( path );
+        // 40 bytes per record and the dictionary repeated in each segment
+        Assert.assertEquals( 5, segments.size() );
+        Assert.assertEquals( values.size(), //
+                             segments.stream().mapToLong( ValuesSegmentIndex.Segment::getRecords ).sum() );
+
+        long read = 0;
+        for ( ValuesSegmentIndex.Segment segment : segments )
+        {
+            // each segment has its own dictionary
+            List<Values> segmentValues = BinaryValuesRecordWriterTest.readBinary(
+                ByteBuffer.wrap( Files.readAllBytes( segment.getPath( path ) ) ), new ValuesDictionary() );
+            Assert.assertEquals( segment.getRecords(), segmentValues.size() );
+            Assert.assertEquals( segment.getFirstTimestamp(), segmentValues.get( 0 ).getEventTimestamp() );
+            Assert.assertEquals( segment.getLastTimestamp(),
+                                 segmentValues.get( segmentValues.size() - 1 ).getEventTimestamp() );
+            read += segmentValues.size();
+        }
+        Assert.assertEquals( values.size(), read );
+
+        ValuesSegmentIndex.Segment third = segments.get( 2 );
+        Assert.assertEquals( 1, ValuesSegmentIndex.between( path, third.getFirstTimestamp() + 1,
+                                                            third.getLastTimestamp() - 1 ).size() );
+    }
+
+    @Test
+    public void read_rolled_segments()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        List<Values> values = BinaryValuesRecordWriterTest.sampleValues( 10_000, dictionary );
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        try (RollingValuesRecordWriter writer = //
+                 new RollingValuesRecordWriter( path, segment -> ValuesFormat.TEXT.newRecordWriter( segment,
+                                                                                                    dictionary ),
+                                                100_000, 0 ))
+        {
+            for ( Values value : values )
+            {
+                writer.write( value );
+            }
+        }
+
+        ValuesFileReader reader = ValuesFileReader.open( path );
+        Assert.assertTrue( reader.getSegments().size() > 3 );
+        // a range over two segments
+        long start = values.get( 2_000 ).getEventTimestamp();
+        long end = values.get( 6_000 ).getEventTimestamp();
+        List<Long> range = new ArrayList<>();
+        reader.range( start, end, value -> range.add( value.getEventTimestamp() ) );
+        Assert.assertEquals( values.subList( 2_000, 6_000 ).stream() //
+                                 .map( Values::getEventTimestamp ).collect( Collectors.toList() ), range );
+
+        long[] count = new long[1];
+        reader.path( "/jetty-0/index.html", value -> {
+            Assert.assertEquals( "/jetty-0/index.html", value.getPath() );
+            count[0]++;
+        } );
+        Assert.assertEquals( 1_429, count[0] );
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ *
+ */
+public class TextValuesRecordWriterTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void written_bytes_of_non_ascii_paths()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        long writtenBytes;
+        try (ValuesRecordWriter writer = ValuesFormat.TEXT.newRecordWriter( path, dictionary ))
+        {
+            String[] paths = { "/index.html", "/caf\u00e9", "/\u65e5\u672c", "/emoji-\ud83d\ude00" };
+            for ( int i = 0; i < 1_000; i++ )
+            {
+                String resource = paths[i % paths.length];
+                writer.write( new Values() //
+                                  .eventTimestamp( i ) //
+                                  .methodId( dictionary.methodId( "GET" ) ) //
+                                  .pathId( dictionary.pathId( resource ) ) //
+                                  .status( 200 ) //
+                                  .warmup( i % 3 == 0 ) );
+            }
+            writtenBytes = writer.getWrittenBytes();
+        }
+        Assert.assertEquals( Files.size( path ), writtenBytes );
+    }
+
+    @Test
+    public void utf8_length()
+    {
+        for ( String value : new String[]{ "", "ascii", "caf\u00e9", "\u65e5\u672c", "\ud83d\ude00", "lone \ud83d" } )
+        {
+            Assert.assertEquals( value, value.getBytes( StandardCharsets.UTF_8 ).length,
+                                 TextValuesRecordWriter.utf8Length( value ) );
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class ThresholdSloEvaluatorTest
+{
+
+    @Test
+    public void breach_after_consecutive_windows()
+        throws Exception
+    {
+        ThresholdSloEvaluator evaluator = new ThresholdSloEvaluator() //
+            .maxP99( 10, TimeUnit.MILLISECONDS ) //
+            .max5xxRatio( 0.05 ) //
+            .warmupWindows( 1 ) //
+            .consecutiveWindows( 2 );
+
+        Assert.assertNull( evaluator.evaluate( window( 100, 50_000_000 ), 0 ) ); // warmup
+        Assert.assertNull( evaluator.evaluate( window( 0, 50_000_000 ), 0 ) );
+        Assert.assertNull( evaluator.evaluate( window( 0, 1_000_000 ), 0 ) );
+        Assert.assertNull( evaluator.evaluate( window( 10, 1_000_000 ), 0 ) );
+        String reason = evaluator.evaluate( window( 10, 1_000_000 ), 0 );
+        Assert.assertNotNull( reason );
+        Assert.assertTrue( reason, reason.startsWith( "5xx ratio" ) );
+
+        ThresholdSloEvaluator throughput = new ThresholdSloEvaluator() //
+            .minThroughputRatio( 0.8 ) //
+            .warmupWindows( 0 ) //
+            .consecutiveWindows( 1 );
+        // the throughput of the partial window depends on how long it lasted
+        ValuesLiveMetrics.Window window = window( 0, 1_000_000 );
+        long qps = window.getTotal().getThroughput();
+        Assert.assertNull( throughput.evaluate( window, qps ) );
+        Assert.assertNotNull( throughput.evaluate( window, 2 * qps ) );
+    }
+
+    /**
+     * a window of 100 samples
+     */
+    private static ValuesLiveMetrics.Window window( int serverErrors, long responseTime )
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        ValuesLiveMetrics liveMetrics = new ValuesLiveMetrics( dictionary );
+        liveMetrics.open( "slo-test" );
+        long start = System.nanoTime();
+        for ( int i = 0; i < 100; i++ )
+        {
+            liveMetrics.onEvent( new Values().pathId( dictionary.pathId( "/" ) ) //
+                                     .eventTimestamp( start + i ) //
+                                     .status( i < serverErrors ? 503 : 200 ) //
+                                     .responseTime( start + i + responseTime ), i, false );
+        }
+        liveMetrics.close();
+        List<ValuesLiveMetrics.Window> windows = liveMetrics.getWindows( 0 );
+        return windows.get( windows.size() - 1 );
+    }
+
+}
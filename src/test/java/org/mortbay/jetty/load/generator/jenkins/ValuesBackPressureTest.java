@@ -0,0 +1,162 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mortbay.jetty.load.generator.Resource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ring buffer of 4 slots whose histograms consumer is stalled: it blocks on the histograms monitor held by the
+ * test when it sees the first path.
+ */
+public class ValuesBackPressureTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private long requestTime = System.nanoTime();
+
+    @After
+    public void clearProperties()
+    {
+        System.clearProperty( ValuesFileWriter.RING_BUFFER_SIZE_PROPERTY );
+        System.clearProperty( ValuesFileWriter.BACK_PRESSURE_PROPERTY );
+        System.clearProperty( ValuesFileWriter.OVERFLOW_SIZE_PROPERTY );
+        System.clearProperty( ValuesFileWriter.DRAIN_TIMEOUT_PROPERTY );
+    }
+
+    @Test
+    public void drop()
+        throws Exception
+    {
+        ValuesFileWriter valuesFileWriter = newValuesFileWriter( ValuesBackPressure.DROP );
+        synchronized ( valuesFileWriter.getHistograms() )
+        {
+            publish( valuesFileWriter, 100 );
+        }
+        valuesFileWriter.onEnd( null );
+
+        ValuesRecordingStats stats = valuesFileWriter.getRecordingStats();
+        Assert.assertEquals( 4, stats.getPublished() );
+        Assert.assertEquals( 96, stats.getDropped() );
+        Assert.assertEquals( 4, stats.getWritten() );
+        assertInOrder( valuesFileWriter, 4 );
+    }
+
+    @Test
+    public void spill_keeps_order()
+        throws Exception
+    {
+        System.setProperty( ValuesFileWriter.OVERFLOW_SIZE_PROPERTY, "8" );
+        ValuesFileWriter valuesFileWriter = newValuesFileWriter( ValuesBackPressure.SPILL );
+        synchronized ( valuesFileWriter.getHistograms() )
+        {
+            publish( valuesFileWriter, 100 );
+            ValuesRecordingStats stalled = valuesFileWriter.getRecordingStats();
+            Assert.assertEquals( 4, stalled.getPublished() );
+            Assert.assertEquals( 8, stalled.getSpilled() );
+            Assert.assertEquals( 88, stalled.getDropped() );
+        }
+        // the overflow is published before the samples coming after it, whatever the consumer pace
+        publish( valuesFileWriter, 100 );
+        valuesFileWriter.onEnd( null );
+
+        ValuesRecordingStats stats = valuesFileWriter.getRecordingStats();
+        Assert.assertEquals( 200, stats.getPublished() + stats.getDropped() );
+        Assert.assertEquals( stats.getPublished(), stats.getWritten() );
+        assertInOrder( valuesFileWriter, (int) stats.getWritten() );
+    }
+
+    @Test
+    public void spill_dropped_when_consumer_stuck_at_end()
+        throws Exception
+    {
+        System.setProperty( ValuesFileWriter.OVERFLOW_SIZE_PROPERTY, "8" );
+        System.setProperty( ValuesFileWriter.DRAIN_TIMEOUT_PROPERTY, "1" );
+        ValuesFileWriter valuesFileWriter = newValuesFileWriter( ValuesBackPressure.SPILL );
+        Thread end = new Thread( () -> valuesFileWriter.onEnd( null ) );
+        synchronized ( valuesFileWriter.getHistograms() )
+        {
+            publish( valuesFileWriter, 100 );
+            end.start();
+            // longer than the drain timeout, the consumer is still stuck when it expires
+            end.join( TimeUnit.SECONDS.toMillis( 2 ) );
+        }
+        end.join( TimeUnit.SECONDS.toMillis( 10 ) );
+        Assert.assertFalse( end.isAlive() );
+
+        ValuesRecordingStats stats = valuesFileWriter.getRecordingStats();
+        // the spilled samples left in the overflow are not published once the timeout expired
+        Assert.assertEquals( 4, stats.getPublished() );
+        Assert.assertEquals( 96, stats.getDropped() );
+        Assert.assertEquals( 4, stats.getWritten() );
+        assertInOrder( valuesFileWriter, 4 );
+    }
+
+    @Test
+    public void block()
+        throws Exception
+    {
+        ValuesFileWriter valuesFileWriter = newValuesFileWriter( ValuesBackPressure.BLOCK );
+        Thread producer = new Thread( () -> publish( valuesFileWriter, 10 ) );
+        synchronized ( valuesFileWriter.getHistograms() )
+        {
+            producer.start();
+            producer.join( TimeUnit.MILLISECONDS.toMillis( 500 ) );
+            // waiting for a free slot
+            Assert.assertTrue( producer.isAlive() );
+        }
+        producer.join( TimeUnit.SECONDS.toMillis( 10 ) );
+        Assert.assertFalse( producer.isAlive() );
+        valuesFileWriter.onEnd( null );
+
+        ValuesRecordingStats stats = valuesFileWriter.getRecordingStats();
+        Assert.assertEquals( 0, stats.getDropped() );
+        Assert.assertEquals( 10, stats.getWritten() );
+        Assert.assertTrue( stats.getBlockedTime() >= TimeUnit.MILLISECONDS.toNanos( 500 ) );
+        assertInOrder( valuesFileWriter, 10 );
+    }
+
+    private ValuesFileWriter newValuesFileWriter( ValuesBackPressure backPressure )
+    {
+        System.setProperty( ValuesFileWriter.RING_BUFFER_SIZE_PROPERTY, "4" );
+        System.setProperty( ValuesFileWriter.BACK_PRESSURE_PROPERTY, backPressure.name() );
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        return (ValuesFileWriter) new ValuesFileWriter( path ).readResolve();
+    }
+
+    private void publish( ValuesFileWriter valuesFileWriter, int count )
+    {
+        for ( int i = 0; i < count; i++ )
+        {
+            Resource.Info info = new Resource( "/index.html" ).newInfo();
+            info.setRequestTime( ++requestTime );
+            info.setResponseTime( requestTime + 1000 );
+            info.setStatus( 200 );
+            valuesFileWriter.onResourceNode( info );
+        }
+    }
+
+    private static void assertInOrder( ValuesFileWriter valuesFileWriter, int count )
+        throws Exception
+    {
+        List<String> lines = Files.readAllLines( valuesFileWriter.getSamplesPath() );
+        Assert.assertEquals( count, lines.size() );
+        long last = 0;
+        for ( String line : lines )
+        {
+            long timestamp = Long.parseLong( line.split( "\\|" )[0] );
+            Assert.assertTrue( last + " then " + timestamp, last < timestamp );
+            last = timestamp;
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ *
+ */
+public class ValuesFileReaderTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void text_range_and_path()
+        throws Exception
+    {
+        check( ValuesFormat.TEXT, ValuesCompression.NONE );
+    }
+
+    @Test
+    public void binary_range_and_path()
+        throws Exception
+    {
+        check( ValuesFormat.BINARY, ValuesCompression.NONE );
+    }
+
+    @Test
+    public void compressed_binary_range_and_path()
+        throws Exception
+    {
+        check( ValuesFormat.BINARY, ValuesCompression.GZIP );
+    }
+
+    private void check( ValuesFormat format, ValuesCompression compression )
+        throws Exception
+    {
+        ValuesDictionary runDictionary = new ValuesDictionary();
+        List<Values> values = BinaryValuesRecordWriterTest.sampleValues( 10_000, runDictionary );
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values" );
+        try (ValuesRecordWriter recordWriter = format.newRecordWriter( path, runDictionary, compression ))
+        {
+            for ( Values value : values )
+            {
+                recordWriter.write( value );
+            }
+        }
+
+        ValuesFileIndex index = ValuesFileIndex.build( path, 100 );
+        Assert.assertEquals( format, index.getFormat() );
+        Assert.assertEquals( 100, index.getBlocks().size() );
+        Assert.assertEquals( 7, index.getPaths().size() );
+        ValuesFileReader reader = new ValuesFileReader( path, index );
+
+        long start = values.get( 2_500 ).getEventTimestamp();
+        long end = values.get( 2_750 ).getEventTimestamp();
+        List<String> range = new ArrayList<>();
+        reader.range( start, end, value -> range.add( value.toString() ) );
+        Assert.assertEquals( values.subList( 2_500, 2_750 ).stream() //
+                                 .map( Values::toString ).collect( Collectors.toList() ), range );
+
+        List<String> perPath = new ArrayList<>();
+        reader.range( "/jetty-3/index.html", start, end, value -> perPath.add( value.toString() ) );
+        Assert.assertEquals( values.subList( 2_500, 2_750 ).stream() //
+                                 .filter( value -> value.getPath().equals( "/jetty-3/index.html" ) ) //
+                                 .map( Values::toString ).collect( Collectors.toList() ), perPath );
+
+        long[] count = new long[1];
+        reader.path( "/jetty-0/index.html", value -> count[0]++ );
+        Assert.assertEquals( 1_429, count[0] );
+        reader.path( "/unknown", value -> Assert.fail() );
+    }
+
+    @Test
+    public void index_stored_next_to_the_file()
+        throws Exception
+    {
+        ValuesDictionary runDictionary = new ValuesDictionary();
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        try (ValuesRecordWriter recordWriter = ValuesFormat.TEXT.newRecordWriter( path, runDictionary ))
+        {
+            for ( Values value : BinaryValuesRecordWriterTest.sampleValues( 1_000, runDictionary ) )
+            {
+                recordWriter.write( value );
+            }
+        }
+
+        ValuesFileReader reader = ValuesFileReader.open( path );
+        Assert.assertTrue( Files.exists( ValuesFileIndex.indexPath( path ) ) );
+        Assert.assertEquals( 1, reader.getIndex().getBlocks().size() );
+        Assert.assertEquals( 1_000, reader.getIndex().getBlocks().get( 0 ).getRecords() );
+        Assert.assertEquals( reader.getIndex().getPaths(), ValuesFileReader.open( path ).getIndex().getPaths() );
+    }
+
+}
@@ -0,0 +1,273 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mortbay.jetty.load.generator.Resource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ */
+public class ValuesFileWriterTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void drain_on_end()
+        throws Exception
+    {
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        ValuesFileWriter valuesFileWriter = (ValuesFileWriter) new ValuesFileWriter( path ).readResolve();
+
+        int count = 50_000;
+        for ( int i = 0; i < count; i++ )
+        {
+            Resource.Info info = new Resource( "/index-" + ( i % 5 ) + ".html" ).newInfo();
+            info.setRequestTime( System.nanoTime() );
+            info.setStatus( 200 );
+            info.setLatencyTime( info.getRequestTime() + 1000 );
+            info.setResponseTime( info.getRequestTime() + 2000 );
+            valuesFileWriter.onResourceNode( info );
+        }
+        valuesFileWriter.onEnd( null );
+        // a second end is a no op
+        valuesFileWriter.onEnd( null );
+
+        ValuesRecordingStats stats = ValuesRecordingStats.read( valuesFileWriter.getRecordingStatsPath() );
+        Assert.assertEquals( count, stats.getPublished() );
+        Assert.assertEquals( count, stats.getWritten() );
+        Assert.assertEquals( 0, stats.getLost() );
+        Assert.assertEquals( count, Files.readAllLines( path ).size() );
+
+        // consumer threads exit once halted
+        for ( Thread thread : Thread.getAllStackTraces().keySet() )
+        {
+            if ( thread.getName().startsWith( "loadgenerator-values" ) )
+            {
+                thread.join( 5000 );
+                Assert.assertFalse( thread.getName(), thread.isAlive() );
+            }
+        }
+    }
+
+    @Test
+    public void ignore_samples_after_end()
+        throws Exception
+    {
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        ValuesFileWriter valuesFileWriter = (ValuesFileWriter) new ValuesFileWriter( path ).readResolve();
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            Resource.Info info = new Resource( "/index.html" ).newInfo();
+            info.setRequestTime( System.nanoTime() );
+            info.setStatus( 200 );
+            valuesFileWriter.onResourceNode( info );
+            if ( i == 4 )
+            {
+                valuesFileWriter.onEnd( null );
+            }
+        }
+        // an ended run has no next iteration
+        valuesFileWriter.nextIteration();
+
+        Assert.assertEquals( 0, valuesFileWriter.getIteration() );
+        Assert.assertEquals( 5, Files.readAllLines( path ).size() );
+        Assert.assertEquals( 5, valuesFileWriter.getRecordingStats().getPublished() );
+        Assert.assertEquals( 5, ValuesRecordingStats.read( valuesFileWriter.getRecordingStatsPath() ).getWritten() );
+        Assert.assertFalse( Files.exists( path.resolveSibling( "values.csv.iteration-1" ) ) );
+    }
+
+    @Test
+    public void shards_merged_in_time_order()
+        throws Exception
+    {
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        System.setProperty( ValuesFileWriter.SHARDS_PROPERTY, "4" );
+        ValuesFileWriter valuesFileWriter;
+        try
+        {
+            valuesFileWriter = (ValuesFileWriter) new ValuesFileWriter( path ).readResolve();
+        }
+        finally
+        {
+            System.clearProperty( ValuesFileWriter.SHARDS_PROPERTY );
+        }
+
+        int threads = 8, count = 10_000;
+        AtomicLong clock = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        for ( int t = 0; t < threads; t++ )
+        {
+            String resource = "/thread-" + t;
+            executor.execute( () -> {
+                for ( int i = 0; i < count; i += 2 )
+                {
+                    // the second request completes first: the shards are in completion order
+                    long first = clock.incrementAndGet(), second = clock.incrementAndGet();
+                    for ( long requestTime : new long[]{ second, first } )
+                    {
+                        Resource.Info info = new Resource( resource ).newInfo();
+                        info.setRequestTime( requestTime );
+                        info.setResponseTime( requestTime + 1000 );
+                        info.setStatus( 200 );
+                        valuesFileWriter.onResourceNode( info );
+                    }
+                }
+            } );
+        }
+        executor.shutdown();
+        Assert.assertTrue( executor.awaitTermination( 30, TimeUnit.SECONDS ) );
+        valuesFileWriter.onEnd( null );
+
+        ValuesRecordingStats stats = valuesFileWriter.getRecordingStats();
+        Assert.assertEquals( 4, stats.getShards() );
+        Assert.assertEquals( threads * count, stats.getWritten() );
+        Assert.assertEquals( 0, stats.getLost() );
+
+        // every sample is there, in request time order
+        List<String> lines = Files.readAllLines( path );
+        Assert.assertEquals( threads * count, lines.size() );
+        long last = 0;
+        for ( String line : lines )
+        {
+            long timestamp = Long.parseLong( line.split( "\\|" )[0] );
+            Assert.assertTrue( last + " then " + timestamp, last < timestamp );
+            last = timestamp;
+        }
+        Assert.assertFalse( Files.exists( Paths.get( path + ".shard-0" ) ) );
+    }
+
+    @Test
+    public void coordinated_omission_corrected_from_stamps()
+        throws Exception
+    {
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        ValuesFileWriter valuesFileWriter = (ValuesFileWriter) new ValuesFileWriter( path ).readResolve();
+        // a request every millisecond, one of them stalled for a second
+        valuesFileWriter.getHistograms().setExpectedInterval( 1_000_000 );
+
+        long start = System.nanoTime();
+        for ( int i = 0; i < 1_000; i++ )
+        {
+            Resource.Info info = new Resource( "/index.html" ).newInfo();
+            info.setRequestTime( start + i * 1_000_000L );
+            info.setStatus( 200 );
+            info.setLatencyTime( info.getRequestTime() + 100_000 );
+            info.setResponseTime( info.getRequestTime() + ( i == 500 ? 1_000_000_000 : 500_000 ) );
+            valuesFileWriter.onResourceNode( info );
+        }
+        valuesFileWriter.onEnd( null );
+
+        ValuesHistograms histograms = valuesFileWriter.getHistograms();
+        Assert.assertEquals( 1_000, histograms.getResponseHistogram( null ).getTotalCount() );
+        Assert.assertEquals( 500_000, histograms.getResponseHistogram( null ).getValueAtPercentile( 99 ), 500 );
+        Assert.assertEquals( 100_000, histograms.getLatencyHistogram( null ).getMaxValue(), 100 );
+        Assert.assertEquals( 1_999, histograms.getCorrectedResponseHistogram( "/index.html" ).getTotalCount() );
+        Assert.assertTrue( histograms.getCorrectedResponseHistogram( null ).getValueAtPercentile( 99 ) > 900_000_000 );
+    }
+
+    @Test
+    public void expected_qps_counts_every_requested_resource()
+    {
+        Resource tree = new Resource( "/index.html", //
+                                      new Resource( "/style.css" ), //
+                                      new Resource( new Resource( "/a.png" ), new Resource( "/b.png" ) ) );
+        Assert.assertEquals( 4, ValuesFileWriter.requestedResources( tree ) );
+        Assert.assertEquals( 0, ValuesFileWriter.requestedResources( null ) );
+    }
+
+    @Test
+    public void compressed_samples_suffix()
+        throws Exception
+    {
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.bin" );
+        ValuesFileWriter valuesFileWriter = (ValuesFileWriter) //
+            new ValuesFileWriter( path, ValuesFormat.BINARY, ValuesCompression.GZIP ).readResolve();
+        for ( int i = 0; i < 100; i++ )
+        {
+            Resource.Info info = new Resource( "/index.html" ).newInfo();
+            info.setRequestTime( System.nanoTime() );
+            info.setStatus( 200 );
+            valuesFileWriter.onResourceNode( info );
+        }
+        valuesFileWriter.onEnd( null );
+
+        Path compressed = valuesFileWriter.getSamplesPath();
+        Assert.assertEquals( "values.bin.gz", compressed.getFileName().toString() );
+        Assert.assertTrue( ValuesCompression.isCompressed( compressed ) );
+        Assert.assertFalse( Files.exists( path ) );
+        Assert.assertEquals( compressed, ValuesCompression.GZIP.withSuffix( compressed ) );
+        int read = 0;
+        try (ValuesRecordReader reader = new BinaryValuesRecordReader( compressed, new ValuesDictionary() ))
+        {
+            Values values = new Values();
+            while ( reader.read( values ) )
+            {
+                read++;
+            }
+        }
+        Assert.assertEquals( 100, read );
+    }
+
+    @Test
+    public void warmup_excluded_from_statistics()
+        throws Exception
+    {
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.bin" );
+        ValuesFileWriter valuesFileWriter =
+            (ValuesFileWriter) new ValuesFileWriter( path, ValuesFormat.BINARY ).readResolve();
+
+        int warmup = 100, measured = 300;
+        valuesFileWriter.startWarmup();
+        for ( int i = 0; i < warmup + measured; i++ )
+        {
+            if ( i == warmup )
+            {
+                valuesFileWriter.startMeasurement();
+            }
+            Resource.Info info = new Resource( "/index.html" ).newInfo();
+            info.setRequestTime( System.nanoTime() );
+            info.setStatus( i < warmup ? 500 : 200 );
+            info.setResponseTime( info.getRequestTime() + 1000 );
+            valuesFileWriter.onResourceNode( info );
+        }
+        valuesFileWriter.onEnd( null );
+
+        ValuesRecordingStats stats = ValuesRecordingStats.read( valuesFileWriter.getRecordingStatsPath() );
+        Assert.assertEquals( warmup, stats.getWarmup() );
+        Assert.assertEquals( warmup + measured, stats.getWritten() );
+        Assert.assertEquals( Collections.singletonMap( 200, (long) measured ), stats.getStatuses() );
+        Assert.assertEquals( measured, valuesFileWriter.getHistograms().getResponseHistogram( null ).getTotalCount() );
+        Assert.assertEquals( 0, valuesFileWriter.getStatusCounters().getSummary().getStatusResult( null ).get5xx() );
+
+        // the warmup samples are still written, tagged
+        int tagged = 0, read = 0;
+        Values values = new Values();
+        try (ValuesRecordReader reader = new BinaryValuesRecordReader( path, new ValuesDictionary() ))
+        {
+            while ( reader.read( values ) )
+            {
+                Assert.assertEquals( values.getStatus() == 500, values.isWarmup() );
+                tagged += values.isWarmup() ? 1 : 0;
+                read++;
+            }
+        }
+        Assert.assertEquals( warmup, tagged );
+        Assert.assertEquals( warmup + measured, read );
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mortbay.jetty.load.generator.Resource;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ */
+public class ValuesHistogramsTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void record_global_and_per_path()
+        throws Exception
+    {
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        ValuesFileWriter valuesFileWriter = (ValuesFileWriter) new ValuesFileWriter( path ).readResolve();
+        // the load generator stamps the request and the response with the nano time
+        long start = System.nanoTime();
+        for ( int i = 0; i < 7_000; i++ )
+        {
+            Resource.Info info = new Resource( "/jetty-" + ( i % 7 ) + "/index.html" ).newInfo();
+            info.setRequestTime( start + i * 1000 );
+            info.setStatus( 200 );
+            info.setLatencyTime( info.getRequestTime() + 1_000_000 + i );
+            info.setResponseTime( info.getRequestTime() + 3_000_000 + i );
+            valuesFileWriter.onResourceNode( info );
+        }
+        valuesFileWriter.onEnd( null );
+        ValuesHistograms histograms = valuesFileWriter.getHistograms();
+
+        Histogram response = histograms.getResponseHistogram( null );
+        Assert.assertEquals( 7_000, response.getTotalCount() );
+        Assert.assertEquals( 3_007_000, response.getValueAtPercentile( 99 ), 10_000 );
+        Assert.assertEquals( 1_007_000, histograms.getLatencyHistogram( null ).getMaxValue(), 10_000 );
+        Assert.assertEquals( 1_000, histograms.getLatencyHistogram( "/jetty-3/index.html" ).getTotalCount() );
+        Assert.assertNull( histograms.getLatencyHistogram( "/unknown" ) );
+
+        Map<String, Long> countPerTag = new HashMap<>();
+        HistogramLogReader reader = new HistogramLogReader( valuesFileWriter.getHistogramLogPath().toFile() );
+        EncodableHistogram histogram;
+        while ( ( histogram = reader.nextIntervalHistogram() ) != null )
+        {
+            countPerTag.merge( histogram.getTag(), ( (Histogram) histogram ).getTotalCount(), Long::sum );
+        }
+        Assert.assertEquals( Long.valueOf( 7_000 ), countPerTag.get( "response" ) );
+        Assert.assertEquals( Long.valueOf( 1_000 ), countPerTag.get( "latency:/jetty-6/index.html" ) );
+    }
+
+    @Test
+    public void coordinated_omission_correction()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        ValuesHistograms histograms = new ValuesHistograms( dictionary );
+        histograms.open( temporaryFolder.getRoot().toPath().resolve( "values.hlog" ) );
+        // a request every millisecond, one of them stalled for a second
+        histograms.setExpectedInterval( 1_000_000 );
+        int pathId = dictionary.pathId( "/index.html" );
+        for ( int i = 0; i < 1_000; i++ )
+        {
+            histograms.onEvent( new Values().pathId( pathId ) //
+                                    .responseTime( i == 500 ? 1_000_000_000 : 500_000 ) //
+                                    .latencyTime( 100_000 ), i, false );
+        }
+        histograms.close();
+
+        Histogram raw = histograms.getResponseHistogram( null );
+        Histogram corrected = histograms.getCorrectedResponseHistogram( "/index.html" );
+        Assert.assertEquals( 1_000, raw.getTotalCount() );
+        // the requests which should have been sent during the stall are accounted
+        Assert.assertEquals( 1_999, corrected.getTotalCount() );
+        Assert.assertEquals( 500_000, raw.getValueAtPercentile( 99 ), 500 );
+        Assert.assertTrue( corrected.getValueAtPercentile( 99 ) > 900_000_000 );
+        Assert.assertEquals( 1_000, histograms.getCorrectedLatencyHistogram( null ).getTotalCount() );
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mortbay.jetty.load.generator.Resource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class ValuesIterationsTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void one_segment_per_iteration()
+        throws Exception
+    {
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        ValuesFileWriter valuesFileWriter = (ValuesFileWriter) new ValuesFileWriter( path ).readResolve();
+
+        int iterations = 3, count = 1000;
+        for ( int iteration = 0; iteration < iterations; iteration++ )
+        {
+            if ( iteration > 0 )
+            {
+                valuesFileWriter.nextIteration();
+            }
+            for ( int i = 0; i < count * ( iteration + 1 ); i++ )
+            {
+                Resource.Info info = new Resource( "/index.html" ).newInfo();
+                info.setRequestTime( System.nanoTime() );
+                info.setStatus( 200 );
+                info.setResponseTime( info.getRequestTime() + TimeUnit.MILLISECONDS.toNanos( iteration + 1 ) );
+                valuesFileWriter.onResourceNode( info );
+            }
+        }
+        valuesFileWriter.onEnd( null );
+
+        Assert.assertEquals( count, Files.readAllLines( path ).size() );
+        Assert.assertEquals( 2 * count, Files.readAllLines( path.resolveSibling( "values.csv.iteration-1" ) ).size() );
+        Assert.assertEquals( 3 * count, Files.readAllLines( valuesFileWriter.getSamplesPath() ).size() );
+        Assert.assertEquals( 3 * count, ValuesRecordingStats.read( valuesFileWriter.getRecordingStatsPath() ) //
+            .getWritten() );
+
+        ValuesIterations summary = ValuesIterations.read( valuesFileWriter.getIterationsPath() );
+        Assert.assertEquals( iterations, summary.getIterations().size() );
+        for ( int iteration = 0; iteration < iterations; iteration++ )
+        {
+            ValuesIterations.Iteration current = summary.getIterations().get( iteration );
+            Assert.assertEquals( iteration, current.getIteration() );
+            Assert.assertEquals( count * ( iteration + 1 ), current.getSamples() );
+            Assert.assertEquals( TimeUnit.MILLISECONDS.toNanos( iteration + 1 ), current.getP99(),
+                                 TimeUnit.MILLISECONDS.toNanos( 1 ) / 100 );
+        }
+        // p99 of 1, 2 and 3 ms
+        Assert.assertEquals( TimeUnit.MILLISECONDS.toNanos( 2 ), summary.getMeanP99(),
+                             TimeUnit.MILLISECONDS.toNanos( 1 ) / 100 );
+        Assert.assertEquals( Math.sqrt( 2.0 / 3 ) * TimeUnit.MILLISECONDS.toNanos( 1 ), summary.getP99StdDeviation(),
+                             TimeUnit.MILLISECONDS.toNanos( 1 ) / 100 );
+    }
+
+    @Test
+    public void previous_run_iterations_discarded()
+        throws Exception
+    {
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.csv" );
+        for ( int run = 0; run < 2; run++ )
+        {
+            ValuesFileWriter valuesFileWriter = (ValuesFileWriter) new ValuesFileWriter( path ).readResolve();
+            // the first run has 3 iterations, the second only 1
+            for ( int iteration = 0; iteration < ( run == 0 ? 3 : 1 ); iteration++ )
+            {
+                if ( iteration > 0 )
+                {
+                    valuesFileWriter.nextIteration();
+                }
+                Resource.Info info = new Resource( "/index.html" ).newInfo();
+                info.setRequestTime( System.nanoTime() );
+                info.setResponseTime( info.getRequestTime() + 1000 );
+                info.setStatus( 200 );
+                valuesFileWriter.onResourceNode( info );
+            }
+            valuesFileWriter.onEnd( null );
+        }
+
+        ValuesIterations summary = ValuesIterations.read( path.resolveSibling( "values.csv.iterations.json" ) );
+        Assert.assertEquals( 1, summary.getIterations().size() );
+    }
+
+    @Test
+    public void iteration_replaced()
+    {
+        ValuesIterations iterations = new ValuesIterations() //
+            .put( iteration( 0, 100 ) ) //
+            .put( iteration( 1, 300 ) ) //
+            .put( iteration( 1, 200 ) );
+        Assert.assertEquals( 2, iterations.getIterations().size() );
+        Assert.assertEquals( 150, iterations.getMeanP99() );
+        Assert.assertEquals( 50, iterations.getP99StdDeviation() );
+        Assert.assertEquals( 100, iterations.getMinP99() );
+        Assert.assertEquals( 200, iterations.getMaxP99() );
+    }
+
+    private static ValuesIterations.Iteration iteration( int index, long p99 )
+    {
+        ValuesIterations.Iteration iteration = new ValuesIterations.Iteration();
+        iteration.setIteration( index );
+        iteration.setP99( p99 );
+        return iteration;
+    }
+}
@@ -0,0 +1,83 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class ValuesLiveMetricsTest
+{
+
+    @Test
+    public void windows_per_second()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        ValuesLiveMetrics liveMetrics = new ValuesLiveMetrics( dictionary );
+        List<ValuesLiveMetrics.Window> forwarded = new ArrayList<>();
+        liveMetrics.setSink( forwarded::add );
+        liveMetrics.open( "live-test" );
+        int pathId = dictionary.pathId( "/index.html" );
+        long start = System.nanoTime();
+        for ( int i = 0; i < 1_000; i++ )
+        {
+            long requestTime = start + i * 1_000;
+            liveMetrics.onEvent( new Values().pathId( pathId ) //
+                                     .eventTimestamp( requestTime ) //
+                                     .status( i % 100 == 0 ? 500 : 200 ) //
+                                     .responseTime( requestTime + ( i == 999 ? 50_000_000 : 1_000_000 ) ), i, false );
+        }
+        long openedNanos = System.nanoTime() - start;
+        liveMetrics.close();
+
+        List<ValuesLiveMetrics.Window> windows = liveMetrics.getWindows( 0 );
+        Assert.assertEquals( 1, windows.size() );
+        ValuesLiveMetrics.Aggregate total = windows.get( 0 ).getTotal();
+        Assert.assertNull( total.getPath() );
+        Assert.assertEquals( 1_000, total.getCount() );
+        Assert.assertEquals( 0.01, total.getErrorRate(), 0.0001 );
+        Assert.assertEquals( 1_000_000, total.getP50(), 1_000 );
+        Assert.assertEquals( 50_000_000, total.getMax(), 50_000 );
+        Assert.assertEquals( "/index.html", windows.get( 0 ).getPaths().get( 0 ).getPath() );
+        Assert.assertTrue( liveMetrics.getWindows( windows.get( 0 ).getTimestamp() ).isEmpty() );
+        // the last partial window is forwarded too
+        Assert.assertEquals( windows, forwarded );
+        // a partial window lasting less than a second
+        if ( openedNanos < TimeUnit.MILLISECONDS.toNanos( 500 ) )
+        {
+            Assert.assertTrue( total.getThroughput() > 2 * total.getCount() );
+        }
+    }
+
+    @Test
+    public void warmup_ignored_and_null_path_labelled()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        ValuesLiveMetrics liveMetrics = new ValuesLiveMetrics( dictionary );
+        liveMetrics.open( "live-test" );
+        int nullPathId = dictionary.pathId( null );
+        long requestTime = System.nanoTime();
+        for ( int i = 0; i < 10; i++ )
+        {
+            liveMetrics.onEvent( new Values().pathId( nullPathId ) //
+                                     .warmup( i < 4 ) //
+                                     .eventTimestamp( requestTime ) //
+                                     .status( 200 ) //
+                                     .responseTime( requestTime + 1_000_000 ), i, false );
+        }
+        liveMetrics.close();
+
+        ValuesLiveMetrics.Window window = liveMetrics.getLastWindow();
+        Assert.assertEquals( 6, window.getTotal().getCount() );
+        Assert.assertNull( window.getTotal().getPath() );
+        Assert.assertEquals( 1, window.getPaths().size() );
+        Assert.assertEquals( ValuesDictionary.NULL_LABEL, window.getPaths().get( 0 ).getPath() );
+    }
+
+}
@@ -0,0 +1,110 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ */
+public class ValuesMergerTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void merge_unsorted_inputs_in_runs()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        // completion order: each input is only roughly ordered by request time
+        Path first = write( "first.bin", dictionary, 5, 3, 1, 2, 4, 11, 9, 10 );
+        Path second = write( "second.bin", dictionary, 8, 6, 7, 12 );
+
+        List<Long> merged = new ArrayList<>();
+        ValuesRecordWriter output = new ValuesRecordWriter()
+        {
+            @Override
+            public void write( Values values )
+            {
+                merged.add( values.getEventTimestamp() );
+            }
+
+            @Override
+            public void flush()
+            {
+                // no op
+            }
+
+            @Override
+            public long getWrittenBytes()
+            {
+                return 0;
+            }
+
+            @Override
+            public void close()
+            {
+                // no op
+            }
+        };
+        Assert.assertEquals( 12, ValuesMerger.merge( Arrays.asList( first, second ), dictionary, output, 3 ) );
+
+        Assert.assertEquals( Arrays.asList( 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L ), merged );
+        // only the inputs are left
+        File[] files = temporaryFolder.getRoot().listFiles();
+        Assert.assertNotNull( files );
+        Assert.assertEquals( 2, files.length );
+    }
+
+    @Test
+    public void run_size()
+    {
+        try
+        {
+            int fromHeap = ValuesMerger.runSize();
+            Assert.assertTrue( fromHeap > 0 );
+            Assert.assertTrue( fromHeap <= ValuesMerger.RUN_SIZE );
+
+            System.setProperty( ValuesMerger.RUN_SIZE_PROPERTY, "1000" );
+            Assert.assertEquals( 1000, ValuesMerger.runSize() );
+            System.setProperty( ValuesMerger.RUN_SIZE_PROPERTY, "0" );
+            Assert.assertEquals( 1, ValuesMerger.runSize() );
+        }
+        finally
+        {
+            System.clearProperty( ValuesMerger.RUN_SIZE_PROPERTY );
+        }
+    }
+
+    private Path write( String name, ValuesDictionary dictionary, long... timestamps )
+        throws Exception
+    {
+        Path path = temporaryFolder.getRoot().toPath().resolve( name );
+        try (ValuesRecordWriter writer = new BinaryValuesRecordWriter( Files.newOutputStream( path ), dictionary ))
+        {
+            for ( long timestamp : timestamps )
+            {
+                writer.write( new Values() //
+                                  .eventTimestamp( timestamp ) //
+                                  .method( "GET" ) //
+                                  .methodId( dictionary.methodId( "GET" ) ) //
+                                  .path( "/index.html" ) //
+                                  .pathId( dictionary.pathId( "/index.html" ) ) //
+                                  .responseTime( timestamp + 1 ) //
+                                  .status( 200 ) );
+            }
+        }
+        return path;
+    }
+
+}
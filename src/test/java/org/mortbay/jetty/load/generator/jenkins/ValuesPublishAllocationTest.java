@@ -0,0 +1,79 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mortbay.jetty.load.generator.Resource;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+
+/**
+ * Bytes allocated by the publishing thread alone, the consumer threads writing the files and the histograms
+ * are not counted.
+ */
+public class ValuesPublishAllocationTest
+{
+
+    private static final int PUBLISH_COUNT = 100_000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void publish_does_not_allocate()
+        throws Exception
+    {
+        Assume.assumeTrue( ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean );
+        com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue( threadMXBean.isThreadAllocatedMemorySupported() );
+        threadMXBean.setThreadAllocatedMemoryEnabled( true );
+
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.bin" );
+        ValuesFileWriter valuesFileWriter =
+            (ValuesFileWriter) new ValuesFileWriter( path, ValuesFormat.BINARY ).readResolve();
+        Resource.Info[] infos = new Resource.Info[16];
+        for ( int i = 0; i < infos.length; i++ )
+        {
+            Resource.Info info = new Resource( "/index-" + i + ".html" ).method( i % 2 == 0 ? "GET" : "POST" ) //
+                .newInfo();
+            info.setRequestTime( System.nanoTime() );
+            info.setStatus( 200 );
+            info.setLatencyTime( info.getRequestTime() + 1000 );
+            info.setResponseTime( info.getRequestTime() + 2000 );
+            infos[i] = info;
+        }
+        try
+        {
+            // warmup: the dictionary learns the paths and the publish path gets compiled
+            publish( valuesFileWriter, infos );
+
+            long threadId = Thread.currentThread().getId();
+            long before = threadMXBean.getThreadAllocatedBytes( threadId );
+            publish( valuesFileWriter, infos );
+            long allocated = threadMXBean.getThreadAllocatedBytes( threadId ) - before;
+
+            // near zero, a few stray bytes per thousand publications at most
+            Assert.assertTrue( allocated + " bytes allocated for " + PUBLISH_COUNT + " publications",
+                               allocated < PUBLISH_COUNT / 10 );
+        }
+        finally
+        {
+            valuesFileWriter.onEnd( null );
+        }
+        Assert.assertEquals( 0, valuesFileWriter.getRecordingStats().getDropped() );
+        Assert.assertEquals( 2 * PUBLISH_COUNT, valuesFileWriter.getRecordingStats().getWritten() );
+    }
+
+    private static void publish( ValuesFileWriter valuesFileWriter, Resource.Info[] infos )
+    {
+        for ( int i = 0; i < PUBLISH_COUNT; i++ )
+        {
+            valuesFileWriter.onResourceNode( infos[i & ( infos.length - 1 )] );
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class ValuesSamplerTest
+{
+
+    @Test
+    public void reservoir_per_window()
+        throws Exception
+    {
+        ListRecordWriter recordWriter = new ListRecordWriter();
+        ValuesSampler sampler = new ValuesSampler.Reservoir( 100, 1 );
+        // 3 windows of 1 second with 10 000 samples each
+        for ( int i = 0; i < 30_000; i++ )
+        {
+            sampler.sample( new Values().eventTimestamp( i * TimeUnit.SECONDS.toNanos( 1 ) / 10_000 ), recordWriter );
+        }
+        sampler.flush( recordWriter );
+
+        Assert.assertEquals( 300, recordWriter.values.size() );
+        Assert.assertEquals( 300, sampler.getRecorded() );
+        for ( int i = 1; i < recordWriter.values.size(); i++ )
+        {
+            Assert.assertTrue( recordWriter.values.get( i - 1 ).getEventTimestamp() //
+                                   < recordWriter.values.get( i ).getEventTimestamp() );
+        }
+    }
+
+    @Test
+    public void tail_keeps_errors_and_slow_samples()
+        throws Exception
+    {
+        ListRecordWriter recordWriter = new ListRecordWriter();
+        ValuesSampler sampler = new ValuesSampler.Tail( 0, 1 );
+        long second = TimeUnit.SECONDS.toNanos( 1 );
+        for ( int i = 0; i < 100_000; i++ )
+        {
+            // one sample out of 1000 is slow, one out of 10 000 is an error
+            long requestTime = i * second / 10_000;
+            sampler.sample( new Values() //
+                                .eventTimestamp( requestTime ) //
+                                .status( i % 10_000 == 5 ? 500 : 200 ) //
+                                .responseTime( requestTime + ( i % 1000 == 7 ? 1_000_000 : 1_000 ) ), recordWriter );
+        }
+
+        long slow = recordWriter.values.stream().filter( values -> values.getResponseDuration() == 1_000_000 ).count();
+        long errors = recordWriter.values.stream().filter( values -> values.getStatus() == 500 ).count();
+        Assert.assertEquals( 100, slow );
+        Assert.assertEquals( 10, errors );
+        // first window keeps everything until a p99 is known
+        Assert.assertTrue( recordWriter.values.size() < 10_000 + slow + errors + 1 );
+    }
+
+    private static class ListRecordWriter
+        implements ValuesRecordWriter
+    {
+        private final List<Values> values = new ArrayList<>();
+
+        @Override
+        public void write( Values values )
+        {
+            this.values.add( new Values().copy( values ) );
+        }
+
+        @Override
+        public void flush()
+        {
+            // no op
+        }
+
+        @Override
+        public long getWrittenBytes()
+        {
+            return 0;
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            // no op
+        }
+    }
+}
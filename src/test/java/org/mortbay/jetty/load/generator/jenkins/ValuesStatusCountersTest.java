@@ -0,0 +1,61 @@
+package org.mortbay.jetty.load.generator.jenkins;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class ValuesStatusCountersTest
+{
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void count_per_family_path_and_window()
+        throws Exception
+    {
+        ValuesDictionary dictionary = new ValuesDictionary();
+        ValuesStatusCounters counters = new ValuesStatusCounters( dictionary );
+        counters.open();
+        long start = System.nanoTime();
+        // 100 windows of 1 second, more than a chunk
+        for ( int i = 0; i < 10_000; i++ )
+        {
+            String path = "/index-" + ( i % 2 ) + ".html";
+            Values values = new Values() //
+                .eventTimestamp( start + i * TimeUnit.MILLISECONDS.toNanos( 10 ) ) //
+                .pathId( dictionary.pathId( path ) ) //
+                .status( i % 10 == 0 ? 503 : i % 10 == 1 ? 0 : 200 );
+            counters.onEvent( values, i, false );
+        }
+
+        Path path = temporaryFolder.getRoot().toPath().resolve( "values.status.json" );
+        counters.getSummary().write( path );
+        ValuesStatusSummary summary = ValuesStatusSummary.read( path );
+
+        Assert.assertEquals( 1000, summary.getWindow() );
+        Assert.assertTrue( summary.getTotal().length >= 100 );
+        StatusResult total = summary.getStatusResult( null );
+        Assert.assertEquals( 8_000, total.get2xx() );
+        Assert.assertEquals( 1_000, total.get5xx() );
+        // 10 failures without status per window
+        Assert.assertEquals( 10, summary.getTotal()[50][0] );
+        Assert.assertEquals( 1_000, summary.getStatusResult( "/index-0.html" ).get5xx() );
+        Assert.assertEquals( 0, summary.getStatusResult( "/index-1.html" ).get5xx() );
+        Assert.assertEquals( 0, summary.getStatusResult( "/unknown" ).get2xx() );
+        long perWindow = 0;
+        for ( int window = 0; window < summary.getTotal().length; window++ )
+        {
+            perWindow += summary.getStatusResult( "/index-1.html", window ).get2xx();
+        }
+        Assert.assertEquals( 4_000, perWindow );
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.mortbay.jetty.load.generator.jenkins.benchmark;
+
+import org.mortbay.jetty.load.generator.Resource;
+import org.mortbay.jetty.load.generator.jenkins.ValuesFileWriter;
+import org.mortbay.jetty.load.generator.jenkins.ValuesFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of publishing a {@link Resource.Info} from the load generator threads into the ring buffer.
+ * The gc profiler (see {@link #main(String[])}) also counts what the consumer threads allocate to write the files,
+ * the publishing thread alone is asserted not to allocate by
+ * {@link org.mortbay.jetty.load.generator.jenkins.ValuesPublishAllocationTest}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ValuesPublishBenchmark
+{
+
+    private Path path;
+
+    private ValuesFileWriter valuesFileWriter;
+
+    private Resource.Info[] infos;
+
+    private int index;
+
+    @Setup( Level.Trial )
+    public void setup()
+        throws Exception
+    {
+        path = Files.createTempFile( "values", ".bin" );
+        valuesFileWriter = (ValuesFileWriter) new ValuesFileWriter( path, ValuesFormat.BINARY ).readResolve();
+        infos = new Resource.Info[16];
+        for ( int i = 0; i < infos.length; i++ )
+        {
+            Resource.Info info = new Resource( "/index-" + i + ".html" ).method( i % 2 == 0 ? "GET" : "POST" ) //
+                .newInfo();
+            info.setRequestTime( System.nanoTime() );
+            info.setStatus( 200 );
+            info.setLatencyTime( info.getRequestTime() + 1000 );
+            info.setResponseTime( info.getRequestTime() + 2000 );
+            infos[i] = info;
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+        throws Exception
+    {
+        valuesFileWriter.onEnd( null );
+        Files.deleteIfExists( path );
+    }
+
+    @Benchmark
+    public void publish_resource_info()
+    {
+        valuesFileWriter.onResourceNode( infos[index++ & ( infos.length - 1 )] );
+    }
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        new Runner( new OptionsBuilder() //
+                        .include( ValuesPublishBenchmark.class.getName() ) //
+                        .addProfiler( GCProfiler.class ) //
+                        .build() ).run();
+    }
+
+}
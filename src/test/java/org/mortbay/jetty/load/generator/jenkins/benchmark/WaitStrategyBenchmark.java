@@ -0,0 +1,144 @@
+package org.mortbay.jetty.load.generator.jenkins.benchmark;
+
+import org.mortbay.jetty.load.generator.Resource;
+import org.mortbay.jetty.load.generator.jenkins.ValuesFileWriter;
+import org.mortbay.jetty.load.generator.jenkins.ValuesFormat;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publish throughput for each wait strategy and producer type, the cpu time used by the consumer
+ * threads during each iteration is reported by the {@link ConsumerCpu} counters.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class WaitStrategyBenchmark
+{
+
+    @Param( { "blocking", "sleeping", "yielding", "busyspin" } )
+    public String waitStrategy;
+
+    @Param( { "multi", "single" } )
+    public String producerType;
+
+    private Path path;
+
+    private ValuesFileWriter valuesFileWriter;
+
+    private Resource.Info info;
+
+    @Setup( Level.Trial )
+    public void setup()
+        throws Exception
+    {
+        System.setProperty( ValuesFileWriter.WAIT_STRATEGY_PROPERTY, waitStrategy );
+        System.setProperty( ValuesFileWriter.PRODUCER_TYPE_PROPERTY, producerType );
+        path = Files.createTempFile( "values", ".bin" );
+        valuesFileWriter = (ValuesFileWriter) new ValuesFileWriter( path, ValuesFormat.BINARY ).readResolve();
+        info = new Resource( "/index.html" ).newInfo();
+        info.setRequestTime( System.nanoTime() );
+        info.setStatus( 200 );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+        throws Exception
+    {
+        valuesFileWriter.onEnd( null );
+        Files.deleteIfExists( path );
+    }
+
+    private static long consumerCpuTime()
+    {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long cpu = 0;
+        for ( long id : threadMXBean.getAllThreadIds() )
+        {
+            ThreadInfo threadInfo = threadMXBean.getThreadInfo( id );
+            if ( threadInfo != null && threadInfo.getThreadName().startsWith( "loadgenerator-" ) )
+            {
+                cpu += Math.max( 0, threadMXBean.getThreadCpuTime( id ) );
+            }
+        }
+        return cpu;
+    }
+
+    @Benchmark
+    public void publish( ConsumerCpu consumerCpu )
+    {
+        consumerCpu.published++;
+        valuesFileWriter.onResourceNode( info );
+    }
+
+    /**
+     * consumer cpu counters, reported by jmh with the results of each iteration
+     */
+    @State( Scope.Thread )
+    @AuxCounters( AuxCounters.Type.EVENTS )
+    public static class ConsumerCpu
+    {
+        /**
+         * samples published by the producer thread during the iteration
+         */
+        public long published;
+
+        /**
+         * ns of consumer cpu per published sample during the iteration
+         */
+        public double consumerCpuPerSample;
+
+        private long startCpu;
+
+        @Setup( Level.Iteration )
+        public void startIteration()
+        {
+            published = 0;
+            consumerCpuPerSample = 0;
+            startCpu = consumerCpuTime();
+        }
+
+        /**
+         * the counters are read once the consumers of the last iteration are stopped so the cpu is taken here
+         */
+        @TearDown( Level.Iteration )
+        public void endIteration()
+        {
+            long cpu = consumerCpuTime() - startCpu;
+            consumerCpuPerSample = published == 0 ? 0D : (double) cpu / published;
+        }
+    }
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        new Runner( new OptionsBuilder() //
+                        .include( WaitStrategyBenchmark.class.getName() ) //
+                        .build() ).run();
+    }
+
+}
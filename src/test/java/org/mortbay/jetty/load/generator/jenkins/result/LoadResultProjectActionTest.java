@@ -0,0 +1,138 @@
+package org.mortbay.jetty.load.generator.jenkins.result;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mortbay.jetty.load.generator.jenkins.RunInformations;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ *
+ */
+public class LoadResultProjectActionTest
+{
+
+    @Test
+    public void version_wildcard()
+    {
+        Assert.assertEquals( "9.4.9*", LoadResultProjectAction.versionWildcard( "9.4.9.v20180320" ) );
+        Assert.assertEquals( "9.4.10*", LoadResultProjectAction.versionWildcard( "9.4.10-SNAPSHOT" ) );
+        Assert.assertEquals( "9.4.11*", LoadResultProjectAction.versionWildcard( "9.4.11-NO-LOGGER-SNAPSHOT" ) );
+        Assert.assertEquals( "10.0.0*", LoadResultProjectAction.versionWildcard( "10.0.0" ) );
+    }
+
+    @Test
+    public void map_run_informations_of_version()
+        throws Exception
+    {
+        String results = json( "{ 'hits' : { 'hits' : [" //
+                                   + hit( "9.4.9.v20180320", 3000, "HTTP", 10 ) + "," //
+                                   // legacy document matched by the 9.4.9* wildcard
+                                   + hit( "9.4.90", 2500, "http", 10 ) + "," //
+                                   + hit( "9.4.9.v20180320", 2000, "h2c", 20 ) + "," //
+                                   + "{ '_source' : { 'transport' : 'http' } }" //
+                                   + " ] } }" );
+
+        List<RunInformations> runInformations =
+            LoadResultProjectAction.mapRunInformations( results, "9.4.9.v20180320" );
+
+        Assert.assertEquals( 2, runInformations.size() );
+        Assert.assertEquals( "9.4.9.v20180320", runInformations.get( 0 ).getJettyVersion() );
+        Assert.assertEquals( 3000, runInformations.get( 0 ).getStartTimeStamp() );
+        Assert.assertEquals( "http", runInformations.get( 0 ).getTransport() );
+        // only the first loader config counts
+        Assert.assertEquals( 2 * 3 * 10, runInformations.get( 0 ).getEstimatedQps() );
+        Assert.assertEquals( 2000, runInformations.get( 1 ).getStartTimeStamp() );
+        Assert.assertEquals( "h2c", runInformations.get( 1 ).getTransport() );
+    }
+
+    @Test
+    public void version_result_query_above_inner_result_window()
+        throws Exception
+    {
+        String template;
+        try (InputStream inputStream = LoadResultProjectAction.class.getResourceAsStream( "/versionResult.json" ))
+        {
+            template = IOUtils.toString( inputStream, StandardCharsets.UTF_8 );
+        }
+
+        JsonNode query = new ObjectMapper() //
+            .readTree( LoadResultProjectAction.versionResultQuery( template, "9.4.10-SNAPSHOT", 300 ) );
+
+        // a plain search size, top_hits would be rejected above index.max_inner_result_window
+        Assert.assertEquals( 300, query.path( "size" ).asInt() );
+        Assert.assertTrue( query.path( "aggs" ).isMissingNode() );
+        Assert.assertEquals( "9.4.10-SNAPSHOT", query.findValue( "serverInfo.jettyVersion.keyword" ).asText() );
+        Assert.assertEquals( "9.4.10*", query.findValue( "wildcard" ).path( "serverInfo.jettyVersion" ).asText() );
+    }
+
+    @Test
+    public void map_version_statistics()
+        throws Exception
+    {
+        String results = json( "{ 'aggregations' : { 'version' : { 'buckets' : [" //
+                                   + " { 'key' : '9.4.9', 'qps' : { 'buckets' : [" //
+                                   + "   { 'key' : 2000, 'transport' : { 'buckets' : [" //
+                                   + "     { 'key' : 'HTTP', 'doc_count' : 4," //
+                                   + "       'mean' : { 'count' : 4, 'min' : 1.0, 'max' : 4.0, 'avg' : 2.5 }," //
+                                   + "       'value50' : { 'count' : 4, 'min' : 2.0, 'max' : 5.0, 'avg' : 3.5 }," //
+                                   + "       'value90' : { 'count' : 4, 'min' : 3.0, 'max' : 6.0, 'avg' : 4.5 }," //
+                                   + "       'value90Percentiles' : { 'values' : { '50.0' : 4.0, '99.0' : 6.0 } } }" //
+                                   + "   ] } }," //
+                                   + "   { 'key' : 1000, 'transport' : { 'buckets' : [" //
+                                   + "     { 'key' : 'h2c', 'doc_count' : 1 }" //
+                                   + "   ] } }" //
+                                   + " ] } }," //
+                                   + " { 'key' : '9.4.10', 'qps' : { 'buckets' : [" //
+                                   + "   { 'key' : 1000, 'transport' : { 'buckets' : [" //
+                                   + "     { 'key' : 'http', 'doc_count' : 2 }" //
+                                   + "   ] } }" //
+                                   + " ] } } ] } } }" );
+
+        List<VersionStatistics> versionStatistics = LoadResultProjectAction.mapVersionStatistics( results );
+
+        Assert.assertEquals( 3, versionStatistics.size() );
+        // ordered by version, qps and transport
+        Assert.assertEquals( "9.4.10", versionStatistics.get( 0 ).getJettyVersion() );
+        Assert.assertEquals( 1000, versionStatistics.get( 1 ).getEstimatedQps() );
+        Assert.assertEquals( "h2c", versionStatistics.get( 1 ).getTransport() );
+
+        VersionStatistics statistics = versionStatistics.get( 2 );
+        Assert.assertEquals( "9.4.9", statistics.getJettyVersion() );
+        Assert.assertEquals( 2000, statistics.getEstimatedQps() );
+        Assert.assertEquals( "http", statistics.getTransport() );
+        Assert.assertEquals( 4, statistics.getRuns() );
+        Assert.assertEquals( 4, statistics.getMean().getCount() );
+        Assert.assertEquals( 1.0, statistics.getMean().getMin(), 0 );
+        Assert.assertEquals( 4.0, statistics.getMean().getMax(), 0 );
+        Assert.assertEquals( 2.5, statistics.getMean().getAvg(), 0 );
+        Assert.assertEquals( 3.5, statistics.getValue50().getAvg(), 0 );
+        Assert.assertEquals( 4.5, statistics.getValue90().getAvg(), 0 );
+        Assert.assertEquals( 2, statistics.getValue90Percentiles().size() );
+        Assert.assertEquals( 6.0, statistics.getValue90Percentiles().get( "99.0" ), 0 );
+    }
+
+    private static String hit( String jettyVersion, long startTimeStamp, String transport, int resourceRate )
+    {
+        return "{ '_source' : {" //
+            + " 'serverInfo' : { 'jettyVersion' : '" + jettyVersion + "', 'gitHash' : 'abc' }," //
+            + " 'collectorInformations' : { 'startTimeStamp' : " + startTimeStamp + " }," //
+            + " 'transport' : '" + transport + "'," //
+            + " 'loadConfigs' : [" //
+            + "   { 'type' : 'PROBE', 'instanceNumber' : 1, 'resourceNumber' : 1, 'resourceRate' : 1 }," //
+            + "   { 'type' : 'LOADER', 'instanceNumber' : 2, 'resourceNumber' : 3, 'resourceRate' : " //
+            + resourceRate + " }," //
+            + "   { 'type' : 'LOADER', 'instanceNumber' : 5, 'resourceNumber' : 5, 'resourceRate' : 5 } ] } }";
+    }
+
+    private static String json( String singleQuoted )
+    {
+        return singleQuoted.replace( '\'', '"' );
+    }
+
+}
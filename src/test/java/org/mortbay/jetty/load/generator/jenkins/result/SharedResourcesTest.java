@@ -0,0 +1,113 @@
+package org.mortbay.jetty.load.generator.jenkins.result;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *
+ */
+public class SharedResourcesTest
+{
+
+    private final SharedResources<Resource> sharedResources = new SharedResources<>();
+
+    private final List<Resource> built = new ArrayList<>();
+
+    @Test
+    public void lease_and_release()
+    {
+        SharedResources.Lease<Resource> first = sharedResources.lease( "host", this::build );
+        SharedResources.Lease<Resource> second = sharedResources.lease( "host", this::build );
+        SharedResources.Lease<Resource> other = sharedResources.lease( "other", this::build );
+
+        Assert.assertSame( first.get(), second.get() );
+        Assert.assertNotSame( first.get(), other.get() );
+        Assert.assertEquals( 2, built.size() );
+
+        first.close();
+        // closing a lease twice releases once
+        first.close();
+        second.close();
+        Assert.assertFalse( "still shared", built.get( 0 ).closed );
+        Assert.assertSame( built.get( 0 ), sharedResources.lease( "host", this::build ).get() );
+    }
+
+    @Test
+    public void retired_closed_by_last_lease()
+    {
+        SharedResources.Lease<Resource> lease = sharedResources.lease( "host", this::build );
+
+        sharedResources.retireAll();
+        Assert.assertFalse( "leased", lease.get().closed );
+
+        SharedResources.Lease<Resource> replacing = sharedResources.lease( "host", this::build );
+        Assert.assertNotSame( lease.get(), replacing.get() );
+
+        lease.close();
+        Assert.assertTrue( lease.get().closed );
+        Assert.assertFalse( replacing.get().closed );
+
+        replacing.close();
+        sharedResources.retireAll();
+        Assert.assertTrue( replacing.get().closed );
+    }
+
+    @Test
+    public void failed_build_retried()
+    {
+        try
+        {
+            sharedResources.lease( "host", () -> {
+                throw new IllegalStateException( "cannot connect" );
+            } );
+            Assert.fail();
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+        Assert.assertNotNull( sharedResources.lease( "host", this::build ).get() );
+        Assert.assertEquals( 1, built.size() );
+    }
+
+    @Test
+    public void race_loser_closed()
+    {
+        AtomicReference<SharedResources.Lease<Resource>> winner = new AtomicReference<>();
+        // another caller shares its resource while this one is building
+        SharedResources.Lease<Resource> lease = sharedResources.lease( "host", () -> {
+            winner.set( sharedResources.lease( "host", this::build ) );
+            return build();
+        } );
+
+        Assert.assertEquals( 2, built.size() );
+        Assert.assertSame( winner.get().get(), lease.get() );
+        Assert.assertSame( built.get( 0 ), lease.get() );
+        Assert.assertTrue( built.get( 1 ).closed );
+    }
+
+    private Resource build()
+    {
+        Resource resource = new Resource();
+        built.add( resource );
+        return resource;
+    }
+
+    private static class Resource
+        implements AutoCloseable
+    {
+        private boolean closed;
+
+        @Override
+        public void close()
+        {
+            Assert.assertFalse( "closed twice", closed );
+            closed = true;
+        }
+    }
+
+}